@@ -1,11 +1,25 @@
 package com.simtechdata;
 
+import com.simtechdata.bash.SimulatedBackend;
 import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.purge.LatencyHistory;
+import com.simtechdata.purge.Manifest;
+import com.simtechdata.purge.PriorityPurge;
+import com.simtechdata.purge.PurgeExecutor;
+import com.simtechdata.purge.PurgePlan;
+import com.simtechdata.purge.PurgeReport;
+import com.simtechdata.server.Agent;
+import com.simtechdata.structure.Snapshot;
 import com.simtechdata.ui.Flow;
+import com.simtechdata.ui.Progress;
 import picocli.CommandLine;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 @CommandLine.Command(
@@ -26,6 +40,12 @@ import java.util.concurrent.Callable;
                 "\tsnapzap -v /Volumes/MyVolume --list (Just provides the snapshot list and exits)",
                 "\tsnapzap -v MyVolume                 (Shows a menu of options)",
                 "\tsnapzap -v MyVolume --purgeAll      (purges all snapshots on the volume after you confirm)",
+                "\tsnapzap -v MyVolume --purgeAll --yes   (purges all snapshots on the volume without asking)",
+                "\tsnapzap -v MyVolume --purge-from keep-not.txt   (purges the snapshots whose XID or UUID is listed in the file)",
+                "\tretention-tool | snapzap -v MyVolume --purge-from -   (same, reading the list from stdin)",
+                "\tsnapzap -v MyVolume --plan         (shows what --purgeAll would delete and how long it should take)",
+                "\tsnapzap -v MyVolume --plan --json  (same, as JSON)",
+                "\tsnapzap -v Data -v Backup --target-free 50GB   (deletes the most valuable snapshots across both volumes until each has 50 GB free)",
                 "",
                 "Typing '/Volumes/' before the volume name is optional as long as the volume exists in /Volumes",
                 "",
@@ -34,13 +54,28 @@ import java.util.concurrent.Callable;
                 "\tsnapzap -v MyVolume --list",
                 "\tsnapzap -v MyVolume --purgeAll",
                 "",
-                "etc.."
+                "etc..",
+                "",
+                "Agent mode:",
+                "\tSNAPZAP_TOKEN=secret snapzap --serve     (HTTP API on 127.0.0.1:7077)",
+                "\tSNAPZAP_TOKEN=secret snapzap --serve --bind 0.0.0.0 --port 9000",
+                "\tcurl -H 'Authorization: Bearer secret' 'http://127.0.0.1:7077/snapshots?volume=MyVolume'",
+                "\tcurl -H 'Authorization: Bearer secret' -X POST 'http://127.0.0.1:7077/purge?volume=MyVolume&selector=all'"
                 
         }
 )
 
 public class App implements Callable<Integer> {
 
+    /**
+     * The command model for this application.
+     * <p>
+     * Building the model reflects over every annotated option, which is the most expensive part of startup.
+     * It is built once in this static initializer so that the native-image startup profile, which initializes
+     * this class at build time, can store the finished model in the image instead of building it on every run.
+     */
+    private static final CommandLine COMMAND_LINE = new CommandLine(new App());
+
     /**
      * Represents the path to a specific volume that will be used in snapshot management operations.
      * <p>
@@ -53,13 +88,14 @@ public class App implements Callable<Integer> {
      * <p>
      * Purpose:
      * - Used to identify the target volume for operations such as listing snapshots, purging snapshots, or managing snapshots interactively.
+     * - May be repeated together with {@code --target-free} to free space on several volumes at once.
      */
     @CommandLine.Option(
             names = {"-v", "--volume"},
             paramLabel = "path",
-            description = "Volume (ex: -v /Volumes/Name)"
+            description = "Volume (ex: -v /Volumes/Name), may be repeated with --target-free"
     )
-    private String volumePath;
+    private List<String> volumes;
 
     /**
      * Flag indicating whether to list snapshots for a specified volume.
@@ -96,6 +132,181 @@ public class App implements Callable<Integer> {
             defaultValue = "false")
     private boolean purgeAll;
 
+    /**
+     * Flag to answer yes to the confirmation asked by {@code --purgeAll}, for unattended runs.
+     * <p>
+     * Time Machine volumes are never purged unattended; they still need to be confirmed interactively.
+     */
+    @CommandLine.Option(
+            names = {"-y", "--yes"},
+            description = "Do not ask for confirmation before purging (not allowed on Time Machine volumes)",
+            defaultValue = "false")
+    private boolean assumeYes;
+
+    /**
+     * Path to a manifest of snapshots to purge, or {@code -} to read the manifest from standard input.
+     * <p>
+     * The manifest lists one XID or UUID per line. Every listed snapshot found on the volume is deleted
+     * without further confirmation; entries that do not match a snapshot are reported.
+     */
+    @CommandLine.Option(
+            names = {"--purge-from"},
+            paramLabel = "file|-",
+            description = "Purge the snapshots listed (one XID or UUID per line) in a file, or - for stdin")
+    private String purgeFrom;
+
+    /**
+     * Free space to reach on every selected volume's container, for example {@code 50GB}.
+     * <p>
+     * When set, snapshots are deleted across all volumes given with {@code -v}, most valuable first, until each
+     * container has at least this much free space. See {@link PriorityPurge} for the order of deletes.
+     */
+    @CommandLine.Option(
+            names = {"--target-free"},
+            paramLabel = "size",
+            description = "Delete snapshots across the given volumes, most valuable first, until each has this much free space (ex: 50GB)")
+    private String targetFree;
+
+    /**
+     * Flag to print the purge plan for the volume instead of purging it.
+     * <p>
+     * The plan lists the snapshots in the order {@code --purgeAll} would delete them, which of them would be
+     * skipped, the expected number of system calls and an estimated duration. Nothing is deleted.
+     */
+    @CommandLine.Option(
+            names = {"--plan", "--dry-run"},
+            description = "Show what --purgeAll would do and estimate how long it would take, without deleting anything",
+            defaultValue = "false")
+    private boolean plan;
+
+    /**
+     * Flag to print the purge plan as JSON when used with {@code --plan}.
+     */
+    @CommandLine.Option(
+            names = {"--json"},
+            description = "Print the --plan output as JSON",
+            defaultValue = "false")
+    private boolean json;
+
+    /**
+     * Number of snapshot deletes to run at the same time when purging more than one snapshot.
+     */
+    @CommandLine.Option(
+            names = {"--parallel"},
+            paramLabel = "n",
+            description = "Concurrent deletes when purging several snapshots (default: ${DEFAULT-VALUE})",
+            defaultValue = "1")
+    private int parallel;
+
+    /**
+     * Flag to print the full detail of every snapshot delete instead of a single progress line.
+     */
+    @CommandLine.Option(
+            names = {"--verbose"},
+            description = "Print the command and output of every snapshot delete",
+            defaultValue = "false")
+    private boolean verbose;
+
+    /**
+     * Flag to run SnapZap as a local HTTP agent instead of a one-shot command.
+     * <p>
+     * When set, the application serves snapshot inventories, purge jobs and metrics over HTTP
+     * until the process is terminated. See {@link Agent} for the available endpoints.
+     */
+    @CommandLine.Option(
+            names = {"--serve"},
+            description = "Run as an HTTP agent exposing snapshot inventory, purge jobs and metrics",
+            defaultValue = "false")
+    private boolean serve;
+
+    /**
+     * The TCP port the agent listens on when {@code --serve} is used.
+     */
+    @CommandLine.Option(
+            names = {"--port"},
+            paramLabel = "port",
+            description = "Agent port (default: ${DEFAULT-VALUE})",
+            defaultValue = "7077")
+    private int port;
+
+    /**
+     * The address the agent binds to when {@code --serve} is used.
+     * <p>
+     * Defaults to the loopback address so the agent is not reachable from other hosts unless
+     * explicitly requested, for example with {@code --bind 0.0.0.0}.
+     */
+    @CommandLine.Option(
+            names = {"--bind"},
+            paramLabel = "address",
+            description = "Agent bind address (default: ${DEFAULT-VALUE})",
+            defaultValue = "127.0.0.1")
+    private String bindAddress;
+
+    /**
+     * The shared secret agent clients must send as a bearer token when {@code --serve} is used.
+     * <p>
+     * Falls back to the {@code SNAPZAP_TOKEN} environment variable, which keeps the secret out of the process
+     * list. If neither is set, the agent generates a token and prints it at startup.
+     */
+    @CommandLine.Option(
+            names = {"--token"},
+            paramLabel = "secret",
+            description = "Agent bearer token (default: $SNAPZAP_TOKEN, or a generated token printed at startup)",
+            defaultValue = "${env:SNAPZAP_TOKEN}")
+    private String token;
+
+    /**
+     * Flag to let the agent accept purge jobs on Time Machine volumes.
+     * <p>
+     * The agent cannot ask the interactive confirmations the menu asks for Time Machine volumes, so such purges
+     * are refused unless the operator opts in when starting the agent.
+     */
+    @CommandLine.Option(
+            names = {"--allow-time-machine"},
+            description = "Let the agent purge Time Machine volumes (requests must also pass timeMachine=true)",
+            defaultValue = "false")
+    private boolean allowTimeMachine;
+
+    /**
+     * Number of snapshots per volume for the simulated backend, or {@code null} to use the real {@code diskutil}.
+     * <p>
+     * This hidden option replaces every system call with an in-memory {@link SimulatedBackend} so that all
+     * modes can be exercised and benchmarked on machines without APFS volumes. Simulated runs are not
+     * recorded in the delete latency history.
+     */
+    @CommandLine.Option(
+            names = {"--simulate"},
+            paramLabel = "count",
+            hidden = true,
+            description = "Use a simulated diskutil backend with <count> snapshots per volume")
+    private Integer simulate;
+
+    /**
+     * The share of simulated deletes that fail with a transient "Resource busy" error.
+     * <p>
+     * It defaults to 0 so that benchmark and profile training runs are repeatable; raise it to exercise retries.
+     */
+    @CommandLine.Option(
+            names = {"--simulate-busy"},
+            paramLabel = "rate",
+            hidden = true,
+            description = "With --simulate, the share of deletes (0 to 1) that fail with Resource busy and are retried",
+            defaultValue = "0")
+    private double simulateBusy;
+
+    /**
+     * A file holding captured {@code diskutil apfs listSnapshots} output to parse instead of running any command.
+     * <p>
+     * This hidden option checks the listing parser against the output of a real system: it prints every snapshot
+     * found and fails if any entry of the listing is not recognized.
+     */
+    @CommandLine.Option(
+            names = {"--check-listing"},
+            paramLabel = "file",
+            hidden = true,
+            description = "Parse a captured diskutil listing and print the snapshots found")
+    private Path checkListing;
+
     /**
      * Executes operations related to snapshot management for a specified volume.
      * This method validates input arguments and performs operations such as listing snapshots,
@@ -103,6 +314,10 @@ public class App implements Callable<Integer> {
      * <p>
      * If the `listSnapshots` flag is set, it lists all snapshots for the provided volume path.
      * If the `purgeAll` flag is set, it attempts to purge all snapshots for the provided volume path.
+     * If `purgeFrom` is set, it purges the snapshots named in the given manifest.
+     * If `targetFree` is set, it purges snapshots across every given volume until each has that much free space.
+     * If the `plan` flag is set, it prints the purge plan for the volume without deleting anything.
+     * If the `serve` flag is set, it runs the HTTP agent until the process is terminated.
      * If no flags are present, it initializes an interactive session for snapshot management.
      *
      * @return an integer status code:
@@ -111,16 +326,45 @@ public class App implements Callable<Integer> {
      */
     @Override
     public Integer call()  {
+        if (simulate != null) {
+            if (simulateBusy < 0 || simulateBusy > 1) {
+                System.out.println("--simulate-busy must be between 0 and 1");
+                return 1;
+            }
+            SnapCommands.setBackend(new SimulatedBackend(simulate, 150, 250, simulateBusy));
+            LatencyHistory.disable();
+        }
+        if (checkListing != null) {
+            return checkListing();
+        }
+        PurgeExecutor.setDefaultWorkers(parallel);
+        Progress.setVerbose(verbose);
+        if (serve) {
+            return new Agent(bindAddress, port, token, allowTimeMachine).run();
+        }
+        if (targetFree != null) {
+            return purgeToTarget();
+        }
+        if (volumes != null && volumes.size() > 1) {
+            System.out.println("Only one volume (-v) may be given unless --target-free is used");
+            return 1;
+        }
+        String volumePath = volumes == null ? null : volumes.getFirst();
         if (listSnapshots && volumePath == null) {
             System.out.println("You must pass in a volume name (-v) with the -l argument");
             return 1;
         }
+        if (plan && volumePath == null) {
+            System.out.println("You must pass in a volume name (-v) with the --plan argument");
+            return 1;
+        }
+        if (purgeFrom != null && volumePath == null) {
+            System.out.println("You must pass in a volume name (-v) with the --purge-from argument");
+            return 1;
+        }
         if (volumePath != null) {
-            if(!volumePath.toLowerCase().contains("/volumes/")) {
-                volumePath = "/Volumes/" + volumePath;
-            }
-            Path path = Path.of(volumePath);
-            if (Files.notExists(path)) {
+            volumePath = SnapCommands.normalizeVolume(volumePath);
+            if (!SnapCommands.volumeExists(volumePath)) {
                 System.out.println("Volume does not exist: " + volumePath);
                 return 1;
             }
@@ -128,19 +372,82 @@ public class App implements Callable<Integer> {
                 System.out.println("\n" + volumePath + " does not have any snapshots");
                 return 0;
             }
+            if (plan) {
+                PurgePlan purgePlan = PurgePlan.build(volumePath, parallel);
+                System.out.println(json ? purgePlan.toJson() : purgePlan.render());
+                return 0;
+            }
+            if (purgeFrom != null) {
+                return new Manifest(volumePath).purgeFrom(purgeFrom, new Progress());
+            }
             Flow flow = new Flow(volumePath);
             if (listSnapshots) {
                 flow.showFullList();
                 return 0;
             }
             if (purgeAll) {
-                return flow.purgeAll();
+                return flow.purgeAll(assumeYes);
             }
             flow.start();
         }
         return 0;
     }
 
+    /**
+     * Frees space across every volume given with {@code -v} until each has {@code targetFree} bytes free.
+     *
+     * @return an integer status code: 0 if the target was reached or the user canceled, 1 otherwise
+     */
+    private int purgeToTarget() {
+        if (volumes == null) {
+            System.out.println("You must pass in at least one volume name (-v) with the --target-free argument");
+            return 1;
+        }
+        long target;
+        try {
+            target = PurgeReport.parseBytes(targetFree);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + " (ex: --target-free 50GB)");
+            return 1;
+        }
+        List<String> volumePaths = new ArrayList<>();
+        for (String volume : volumes) {
+            String volumePath = SnapCommands.normalizeVolume(volume);
+            if (!SnapCommands.volumeExists(volumePath)) {
+                System.out.println("Volume does not exist: " + volumePath);
+                return 1;
+            }
+            if (!volumePaths.contains(volumePath)) {
+                volumePaths.add(volumePath);
+            }
+        }
+        return new PriorityPurge(volumePaths, target).run(assumeYes, new Progress());
+    }
+
+    /**
+     * Parses the captured listing in {@code checkListing} and prints every snapshot found.
+     *
+     * @return an integer status code: 0 if every entry was recognized, 1 otherwise
+     */
+    private int checkListing() {
+        try {
+            Map<Integer, Snapshot> snapshots = SnapCommands.parseListing(Files.readString(checkListing));
+            for (Snapshot snapshot : snapshots.values()) {
+                System.out.println(snapshot + "\n");
+            }
+            System.out.printf("%d snapshots parsed from %s%n", snapshots.size(), checkListing);
+            return 0;
+        }
+        catch (IOException e) {
+            System.out.println("Unable to read " + checkListing + ": " + e.getMessage());
+        }
+        catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        return 1;
+    }
+
     /**
      * The entry point of the application.
      * <p>
@@ -154,10 +461,17 @@ public class App implements Callable<Integer> {
      */
     public static void main(String[] args) {
         if (args.length == 0) {
-            new CommandLine(new App()).usage(System.out);
+            COMMAND_LINE.usage(System.out);
             return;
         }
-        int exitCode = new CommandLine(new App()).execute(args);
+        COMMAND_LINE.setExecutionExceptionHandler((e, commandLine, parseResult) -> {
+            if (e instanceof IllegalStateException) {
+                System.out.println("\n" + e.getMessage());
+                return 1;
+            }
+            throw e;
+        });
+        int exitCode = COMMAND_LINE.execute(args);
         System.exit(exitCode);
     }
 }
@@ -0,0 +1,83 @@
+package com.simtechdata.bash;
+
+/**
+ * The Backend interface abstracts the system utilities SnapZap relies on to inspect and delete
+ * APFS snapshots. The default implementation shells out to {@code diskutil} and {@code tmutil};
+ * a simulated implementation allows the rest of the application to be exercised on machines
+ * that have no APFS volumes at all.
+ */
+public interface Backend {
+
+    /**
+     * Returns a short name identifying this backend, used to keep statistics from different
+     * backends apart.
+     *
+     * @return the backend name (never null)
+     */
+    String name();
+
+    /**
+     * Returns the raw snapshot listing for the given volume in the same format produced by
+     * {@code diskutil apfs listSnapshots}.
+     *
+     * @param volumePath the absolute path to the APFS volume; must not be null or empty
+     * @return the unparsed listing text (never null, may be empty)
+     */
+    String listSnapshots(String volumePath);
+
+    /**
+     * Deletes a single snapshot identified by its disk and transaction identifier.
+     *
+     * @param disk the disk identifier hosting the snapshot (for example, {@code disk3s1}); must not be null
+     * @param xid  the snapshot transaction identifier; must not be null
+     * @return the result of the delete command, including exit value and captured output
+     */
+    Result deleteSnapshot(String disk, String xid);
+
+    /**
+     * Returns the raw output of {@code tmutil destinationinfo}.
+     *
+     * @return the unparsed destination listing (never null, may be empty)
+     */
+    String destinationInfo();
+
+    /**
+     * Returns the free space of the APFS Container that hosts the given volume.
+     * <p>
+     * This is the space available to every volume in the container, which is what grows when
+     * snapshots are deleted.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return the free space in bytes, or -1 if it cannot be determined
+     */
+    long containerFreeSpace(String volumePath);
+
+    /**
+     * Returns the identifier of the APFS Container that hosts the given volume.
+     * <p>
+     * Volumes in the same container share its free space, so deleting a snapshot on one of them frees
+     * space for all of them.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return the container identifier (for example, {@code disk3}), or {@code null} if it cannot be determined
+     */
+    String containerOf(String volumePath);
+
+    /**
+     * Indicates whether the given volume path exists on this backend.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return {@code true} if the volume exists; {@code false} otherwise
+     */
+    boolean volumeExists(String volumePath);
+
+    /**
+     * The outcome of a command executed by a {@link Backend}.
+     *
+     * @param commandLine the command line that was executed, for display purposes
+     * @param exitValue   the exit value of the command; zero indicates success
+     * @param output      the captured standard output (never null)
+     * @param error       the captured standard error (never null)
+     */
+    record Result(String commandLine, int exitValue, String output, String error) {}
+}
@@ -0,0 +1,42 @@
+package com.simtechdata.bash;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The DeleteError enum classifies why {@code diskutil apfs deleteSnapshot} failed.
+ * <p>
+ * A {@link #TRANSIENT} failure is expected to go away on its own, typically because Spotlight, a backup
+ * or another process briefly holds the volume, and is worth retrying. Anything that is not recognized as
+ * transient is treated as {@link #PERMANENT} so that unexpected errors are never retried blindly.
+ */
+public enum DeleteError {
+    TRANSIENT,
+    PERMANENT;
+
+    private static final List<String> TRANSIENT_MARKERS = List.of(
+            "resource busy",
+            "ebusy",
+            "in use",
+            "temporarily unavailable",
+            "try again",
+            "timed out",
+            "couldn't open device",
+            "(-69877)");
+
+    /**
+     * Classifies the output of a failed delete.
+     *
+     * @param output the standard error (and, if useful, standard output) of the failed command; must not be null
+     * @return {@link #TRANSIENT} if the output names a condition that is expected to clear; {@link #PERMANENT} otherwise
+     */
+    public static DeleteError classify(String output) {
+        String text = output.toLowerCase(Locale.ROOT);
+        for (String marker : TRANSIENT_MARKERS) {
+            if (text.contains(marker)) {
+                return TRANSIENT;
+            }
+        }
+        return PERMANENT;
+    }
+}
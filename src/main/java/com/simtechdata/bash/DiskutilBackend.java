@@ -0,0 +1,75 @@
+package com.simtechdata.bash;
+
+import com.simtechdata.process.ProcResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The DiskutilBackend class is the production {@link Backend}, delegating to the macOS
+ * {@code diskutil} and {@code tmutil} command-line utilities through {@link JProcs}.
+ */
+public class DiskutilBackend implements Backend {
+
+    private static final Pattern CONTAINER_FREE = Pattern.compile("^\\s*Container\\s+Free\\s+Space:.*?\\((\\d+)\\s+Bytes\\)", Pattern.MULTILINE);
+    private static final Pattern CONTAINER      = Pattern.compile("^\\s*APFS\\s+Container:\\s+(\\S+)", Pattern.MULTILINE);
+
+    @Override
+    public String name() {
+        return "diskutil";
+    }
+
+    @Override
+    public String listSnapshots(String volumePath) {
+        String   command = "diskutil";
+        String[] args    = {"apfs", "listSnapshots", volumePath};
+        return JProcs.getOutputString(command, args);
+    }
+
+    @Override
+    public Result deleteSnapshot(String disk, String xid) {
+        String     command = "diskutil";
+        String[]   args    = {"apfs", "deleteSnapshot", disk, "-xid", xid};
+        ProcResult pr      = JProcs.getResultsOf(command, args);
+        return new Result(pr.getCommandLine(), pr.getExitValue(), pr.getOutputString(), pr.getErrorString());
+    }
+
+    @Override
+    public String destinationInfo() {
+        String   command = "tmutil";
+        String[] args    = {"destinationinfo"};
+        return JProcs.getOutputString(command, args);
+    }
+
+    @Override
+    public long containerFreeSpace(String volumePath) {
+        String   command = "diskutil";
+        String[] args    = {"info", volumePath};
+        Matcher  m       = CONTAINER_FREE.matcher(JProcs.getOutputString(command, args));
+        if (m.find()) {
+            return Long.parseLong(m.group(1));
+        }
+        try {
+            return Files.getFileStore(Path.of(volumePath)).getUsableSpace();
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String containerOf(String volumePath) {
+        String   command = "diskutil";
+        String[] args    = {"info", volumePath};
+        Matcher  m       = CONTAINER.matcher(JProcs.getOutputString(command, args));
+        return m.find() ? m.group(1) : null;
+    }
+
+    @Override
+    public boolean volumeExists(String volumePath) {
+        return Files.exists(Path.of(volumePath));
+    }
+}
@@ -0,0 +1,223 @@
+package com.simtechdata.bash;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SimulatedBackend class is an in-memory {@link Backend} that imitates {@code diskutil}.
+ * <p>
+ * Every path under {@code /Volumes/} is treated as an existing APFS volume. The first time a volume
+ * is listed it is populated with a deterministic set of snapshots (seeded from the volume path), the
+ * oldest of which limits the minimum size of its container. Listings are rendered in the exact text
+ * format of {@code diskutil apfs listSnapshots} so the real parser is exercised, and both listing and
+ * deleting sleep for a configurable time to approximate the cost of the real subprocesses. Each snapshot
+ * holds a simulated amount of space that is returned to the volume's container, which no other volume
+ * shares, when it is deleted, and a
+ * configurable share of deletes fail with "Resource busy" the way they do while Spotlight or a backup is
+ * touching the volume.
+ */
+public class SimulatedBackend implements Backend {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss").withZone(ZoneOffset.UTC);
+
+    /**
+     * Creates a simulated backend.
+     *
+     * @param snapshotsPerVolume the number of snapshots each volume starts with; must be non-negative
+     * @param listMillis         simulated latency of a snapshot listing, in milliseconds
+     * @param deleteMillis       simulated latency of a single snapshot delete, in milliseconds
+     * @param busyRate           the probability, from 0 to 1, that a delete fails with a transient "Resource busy" error
+     */
+    public SimulatedBackend(int snapshotsPerVolume, long listMillis, long deleteMillis, double busyRate) {
+        this.snapshotsPerVolume = snapshotsPerVolume;
+        this.listMillis         = listMillis;
+        this.deleteMillis       = deleteMillis;
+        this.busyRate           = busyRate;
+    }
+
+    private final int                 snapshotsPerVolume;
+    private final long                listMillis;
+    private final long                deleteMillis;
+    private final double              busyRate;
+    private final Map<String, Volume> volumes   = new ConcurrentHashMap<>();
+    private final Map<String, Volume> disks     = new ConcurrentHashMap<>();
+    private final AtomicInteger       diskIndex = new AtomicInteger(1);
+
+    @Override
+    public String name() {
+        return "simulated";
+    }
+
+    @Override
+    public String listSnapshots(String volumePath) {
+        sleep(listMillis);
+        return volume(volumePath).render();
+    }
+
+    @Override
+    public Result deleteSnapshot(String disk, String xid) {
+        sleep(deleteMillis);
+        String commandLine = "diskutil apfs deleteSnapshot " + disk + " -xid " + xid;
+        Volume volume      = disks.get(disk);
+        if (volume == null) {
+            return new Result(commandLine, 1, "", "Error: " + disk + " is not a valid APFS volume\n");
+        }
+        if (busyRate > 0 && ThreadLocalRandom.current().nextDouble() < busyRate) {
+            return new Result(commandLine, 1, "Started APFS operation\n", "Error: -69877: Unable to delete APFS snapshot: Resource busy\n");
+        }
+        Entry entry = volume.remove(xid);
+        if (entry == null) {
+            return new Result(commandLine, 1, "", "Error: No snapshot with XID " + xid + " on " + disk + "\n");
+        }
+        String output = "Deleting APFS Snapshot with XID " + xid + " \"" + entry.name() + "\"\nStarted APFS operation\nFinished APFS operation\n";
+        return new Result(commandLine, 0, output, "");
+    }
+
+    @Override
+    public String destinationInfo() {
+        return "tmutil: No destinations configured.\n";
+    }
+
+    @Override
+    public long containerFreeSpace(String volumePath) {
+        return volume(volumePath).freeSpace();
+    }
+
+    @Override
+    public String containerOf(String volumePath) {
+        String disk = volume(volumePath).disk;
+        return disk.substring(0, disk.indexOf('s', 4));
+    }
+
+    @Override
+    public boolean volumeExists(String volumePath) {
+        return volumePath.toLowerCase().startsWith("/volumes/");
+    }
+
+    /**
+     * Returns the simulated volume for the given path, creating and populating it on first use.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return the simulated volume (never null)
+     */
+    private Volume volume(String volumePath) {
+        return volumes.computeIfAbsent(volumePath, path -> {
+            Volume volume = new Volume("disk" + (10 + diskIndex.getAndIncrement()) + "s1", path.hashCode(), snapshotsPerVolume);
+            disks.put(volume.disk, volume);
+            return volume;
+        });
+    }
+
+    /**
+     * Sleeps for the given number of milliseconds, restoring the interrupted status if interrupted.
+     *
+     * @param millis the time to sleep, in milliseconds
+     */
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single simulated snapshot.
+     */
+    private record Entry(String uuid, String name, String xid, boolean purgeable, boolean spaceReserving, long bytes) {}
+
+    /**
+     * A simulated APFS volume holding an ordered list of snapshots, oldest first.
+     */
+    private static final class Volume {
+
+        private final String      disk;
+        private final List<Entry> entries = new ArrayList<>();
+        private       long        free;
+
+        Volume(String disk, long seed, int count) {
+            this.disk = disk;
+            Random  random = new Random(seed);
+            Instant stamp  = Instant.parse("2025-01-01T00:00:00Z").plus(random.nextInt(720), ChronoUnit.HOURS);
+            long    xid    = 100_000L + random.nextInt(50_000);
+            free = 20_000_000_000L + random.nextLong(30_000_000_000L);
+            for (int i = 0; i < count; i++) {
+                String name = switch (i % 4) {
+                    case 0, 1 -> "com.apple.TimeMachine." + STAMP.format(stamp) + ".local";
+                    case 2 -> "com.bombich.ccc." + new UUID(random.nextLong(), random.nextLong()).toString().toUpperCase() + "." + STAMP.format(stamp);
+                    default -> "com.apple.os.update-" + Long.toHexString(random.nextLong()).toUpperCase();
+                };
+                String uuid = new UUID(random.nextLong(), random.nextLong()).toString().toUpperCase();
+                long   bytes = i == 0 ? 15_000_000_000L + random.nextLong(10_000_000_000L) : 50_000_000L + random.nextLong(4_000_000_000L);
+                entries.add(new Entry(uuid, name, Long.toString(xid), random.nextInt(20) != 0, i == 0, bytes));
+                stamp = stamp.plus(1 + random.nextInt(6), ChronoUnit.HOURS);
+                xid += 1 + random.nextInt(5_000);
+            }
+        }
+
+        /**
+         * Removes the snapshot with the given XID and returns its space to the container.
+         *
+         * @param xid the transaction identifier of the snapshot to remove
+         * @return the removed snapshot, or {@code null} if no snapshot has that XID
+         */
+        synchronized Entry remove(String xid) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).xid().equals(xid)) {
+                    Entry entry = entries.remove(i);
+                    free += entry.bytes();
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        synchronized long freeSpace() {
+            return free;
+        }
+
+        /**
+         * Renders the current snapshots in the text format of {@code diskutil apfs listSnapshots}.
+         *
+         * @return the listing text (never null)
+         */
+        synchronized String render() {
+            if (entries.isEmpty()) {
+                return "No snapshots for " + disk + "\n";
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append("Snapshots for ").append(disk).append(" (").append(entries.size()).append(" found)\n|\n");
+            for (int i = 0; i < entries.size(); i++) {
+                Entry  e      = entries.get(i);
+                String prefix = i == entries.size() - 1 ? "    " : "|   ";
+                sb.append("+-- ").append(e.uuid()).append("\n");
+                sb.append(prefix).append("Name:        ").append(e.name()).append("\n");
+                sb.append(prefix).append("XID:         ").append(e.xid()).append("\n");
+                sb.append(prefix).append("Purgeable:   ").append(e.purgeable() ? "Yes" : "No").append("\n");
+                if (e.spaceReserving()) {
+                    sb.append(prefix).append("NOTE:        This snapshot limits the minimum size of APFS Container ")
+                      .append(disk, 0, disk.indexOf('s', 4)).append("\n");
+                }
+                if (i < entries.size() - 1) {
+                    sb.append("|\n");
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.simtechdata.bash;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The SingleFlight class coalesces concurrent loads of the same key into a single call of its loader.
+ * <p>
+ * The first caller for a key runs the loader; every caller that asks for the same key while that load
+ * is in flight waits for, and shares, its result. A completed result is then reused until it is older
+ * than the freshness window. Invalidating a key (or every key) discards cached results, prevents a
+ * load that started before the invalidation from repopulating the cache, and stops later callers from
+ * joining that load: they start a new one instead. Each key has its own generation, so invalidating one
+ * key never affects the caching of another.
+ *
+ * @param <K> the key type, for example a volume path
+ * @param <V> the loaded value type; values are shared between callers and should not be mutated
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Creates a single-flight loader.
+     *
+     * @param freshness how long a completed result may be reused; must not be null
+     * @param loader    the function that loads the value for a key; must not be null
+     */
+    public SingleFlight(Duration freshness, Function<K, V> loader) {
+        this.freshnessNanos = freshness.toNanos();
+        this.loader         = loader;
+    }
+
+    private final long                                 freshnessNanos;
+    private final Function<K, V>                       loader;
+    private final Map<K, Loaded<V>>                    cache      = new ConcurrentHashMap<>();
+    private final Map<K, Flight<V>>                    inFlight   = new ConcurrentHashMap<>();
+    private final Map<K, AtomicLong>                   generation = new ConcurrentHashMap<>();
+    private final LongAdder                            loads      = new LongAdder();
+    private final LongAdder                            shared     = new LongAdder();
+    private final LongAdder                            loadNanos  = new LongAdder();
+
+    /**
+     * A loaded value together with the time it was loaded.
+     *
+     * @param value    the value returned by the loader
+     * @param loadedAt the wall-clock time the load completed
+     * @param nanos    the {@link System#nanoTime()} at which the load completed, used for expiry
+     */
+    public record Loaded<V>(V value, Instant loadedAt, long nanos) {}
+
+    /**
+     * A load in progress and the generation of its key when it started.
+     */
+    private record Flight<V>(long generation, CompletableFuture<Loaded<V>> future) {}
+
+    /**
+     * Returns the value for the given key, reusing a fresh cached result or an in-flight load.
+     *
+     * @param key the key to load; must not be null
+     * @return the loaded value
+     */
+    public V get(K key) {
+        return fetch(key, false).value();
+    }
+
+    /**
+     * Returns the value for the given key along with the time it was loaded.
+     *
+     * @param key   the key to load; must not be null
+     * @param fresh {@code true} to ignore any cached result; a load in flight is still shared if it started
+     *              after the key was last invalidated
+     * @return the loaded value and its load time (never null)
+     * @throws RuntimeException whatever the loader threw, for the caller that ran it and every caller sharing it
+     */
+    public Loaded<V> fetch(K key, boolean fresh) {
+        Loaded<V> cached = cache.get(key);
+        if (!fresh && cached != null && System.nanoTime() - cached.nanos() < freshnessNanos) {
+            shared.increment();
+            return cached;
+        }
+        AtomicLong keyGeneration   = generation.computeIfAbsent(key, k -> new AtomicLong());
+        long       startGeneration = keyGeneration.get();
+        Flight<V>  mine            = new Flight<>(startGeneration, new CompletableFuture<>());
+        Flight<V>  running         = inFlight.compute(key, (k, current) -> current != null && current.generation() >= startGeneration ? current : mine);
+        if (running != mine) {
+            shared.increment();
+            try {
+                return running.future().join();
+            }
+            catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        try {
+            long      start  = System.nanoTime();
+            V         value  = loader.apply(key);
+            long      end    = System.nanoTime();
+            Loaded<V> loaded = new Loaded<>(value, Instant.now(), end);
+            loads.increment();
+            loadNanos.add(end - start);
+            cache.compute(key, (k, current) -> keyGeneration.get() == startGeneration ? loaded : current);
+            mine.future().complete(loaded);
+            return loaded;
+        }
+        catch (RuntimeException e) {
+            mine.future().completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Discards the cached result for the given key.
+     * <p>
+     * The key's generation is advanced and its result removed in one atomic step on the cache entry, the
+     * same step in which a finished load checks the generation and stores its result, so a load that started
+     * before this call can never store its result after it.
+     *
+     * @param key the key to invalidate; must not be null
+     */
+    public void invalidate(K key) {
+        AtomicLong keyGeneration = generation.computeIfAbsent(key, k -> new AtomicLong());
+        cache.compute(key, (k, current) -> {
+            keyGeneration.incrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * Discards every cached result.
+     */
+    public void invalidateAll() {
+        generation.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * Returns how many times the loader has run.
+     *
+     * @return the number of completed loads
+     */
+    public long loads() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns how many requests were served by a cached result or a load run by another caller.
+     *
+     * @return the number of shared results
+     */
+    public long shared() {
+        return shared.sum();
+    }
+
+    /**
+     * Returns the total time spent in the loader.
+     *
+     * @return the cumulative load time in nanoseconds
+     */
+    public long loadNanos() {
+        return loadNanos.sum();
+    }
+}
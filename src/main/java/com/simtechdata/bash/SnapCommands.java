@@ -1,12 +1,19 @@
 package com.simtechdata.bash;
 
-import com.simtechdata.process.ProcResult;
+import com.simtechdata.purge.PurgeExecutor;
+import com.simtechdata.purge.PurgeListener;
+import com.simtechdata.purge.PurgeReport;
 import com.simtechdata.structure.Snapshot;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,6 +25,90 @@ import java.util.regex.Pattern;
  */
 public class SnapCommands {
 
+    private static final Pattern SNAPSHOT_DISK  = Pattern.compile("^Snapshots?\\s+for\\s+(\\S+)", Pattern.MULTILINE);
+    private static final Pattern ENTRY_START    = Pattern.compile("^\\+--", Pattern.MULTILINE);
+    private static final Pattern SNAPSHOT_ENTRY = Pattern.compile(
+            "^\\+--\\s+(\\p{XDigit}{8}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{12})\\R" +  // UUID
+            "^(?:\\|\\s+|\\s{2,})Name:\\s+(.*?)\\R" +            // Name
+            "^(?:\\|\\s+|\\s{2,})XID:\\s+(\\d+)\\R" +            // XID
+            "^(?:\\|\\s+|\\s{2,})Purgeable:\\s+(Yes|No)\\b",     // Purgeable
+            Pattern.MULTILINE);
+    private static final Pattern MOUNT_POINT    = Pattern.compile("^\\s*Mount\\s+Point\\s*:\\s*(.+?)\\s*$", Pattern.MULTILINE);
+
+    private static volatile Backend backend = new DiskutilBackend();
+
+    private static final Map<String, String>                          diskVolumes = new ConcurrentHashMap<>();
+    private static final SingleFlight<String, Map<Integer, Snapshot>> listings    = new SingleFlight<>(Duration.ofSeconds(5), SnapCommands::loadSnapshots);
+
+    /**
+     * Replaces the backend used to list and delete snapshots.
+     * <p>
+     * The default backend runs the real {@code diskutil} and {@code tmutil} utilities. Installing a
+     * {@link SimulatedBackend} lets every mode of the application run without touching real volumes.
+     *
+     * @param newBackend the backend to use from now on; must not be null
+     */
+    public static void setBackend(Backend newBackend) {
+        backend = newBackend;
+        diskVolumes.clear();
+        listings.invalidateAll();
+    }
+
+    /**
+     * Returns the name of the backend in use, for example {@code diskutil}.
+     *
+     * @return the backend name (never null)
+     */
+    public static String backendName() {
+        return backend.name();
+    }
+
+    /**
+     * Normalizes a volume argument into an absolute volume path.
+     * <p>
+     * Typing '/Volumes/' before the volume name is optional, so a bare name such as {@code MyVolume}
+     * becomes {@code /Volumes/MyVolume}. Paths that already contain '/Volumes/' are returned unchanged.
+     *
+     * @param volume the volume name or path as typed by the user; must not be null
+     * @return the absolute volume path (never null)
+     */
+    public static String normalizeVolume(String volume) {
+        if (!volume.toLowerCase().contains("/volumes/")) {
+            return "/Volumes/" + volume;
+        }
+        return volume;
+    }
+
+    /**
+     * Indicates whether the given volume path exists.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return {@code true} if the volume exists; {@code false} otherwise
+     */
+    public static boolean volumeExists(String volumePath) {
+        return backend.volumeExists(volumePath);
+    }
+
+    /**
+     * Returns the free space of the APFS Container hosting the given volume.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return the free space in bytes, or -1 if it cannot be determined
+     */
+    public static long containerFreeSpace(String volumePath) {
+        return backend.containerFreeSpace(volumePath);
+    }
+
+    /**
+     * Returns the identifier of the APFS Container hosting the given volume.
+     *
+     * @param volumePath the absolute path to the volume; must not be null
+     * @return the container identifier (for example, {@code disk3}), or {@code null} if it cannot be determined
+     */
+    public static String containerOf(String volumePath) {
+        return backend.containerOf(volumePath);
+    }
+
     /**
      * Retrieves the raw output produced by listing APFS snapshots for the given volume path.
      * <p>
@@ -30,9 +121,22 @@ public class SnapCommands {
      * @throws NullPointerException if {@code volumePath} is null
      */
     private static String getSnapString(String volumePath) {
-        String   command = "diskutil";
-        String[] args    = {"apfs", "listSnapshots", volumePath};
-        return JProcs.getOutputString(command, args);
+        return backend.listSnapshots(volumePath);
+    }
+
+    /**
+     * Lists and parses the snapshots of a volume for the shared listing cache, remembering which disk
+     * the volume is on so that a delete only invalidates the listing of its own volume.
+     *
+     * @param volumePath the absolute path to the APFS volume; must not be null
+     * @return an unmodifiable map of 1-based indices to snapshots (never null)
+     */
+    private static Map<Integer, Snapshot> loadSnapshots(String volumePath) {
+        Map<Integer, Snapshot> snapshots = parseSnapshots(getSnapString(volumePath));
+        for (Snapshot snapshot : snapshots.values()) {
+            diskVolumes.put(snapshot.getDisk(), volumePath);
+        }
+        return Collections.unmodifiableMap(snapshots);
     }
 
     /**
@@ -46,11 +150,8 @@ public class SnapCommands {
      * @throws NullPointerException if {@code volumePath} is null
      */
     public static void showSnapshotList(String volumePath) {
-        String                 command       = "diskutil";
-        String[]               args          = {"apfs", "listSnapshots", volumePath};
-        String                 commandOutput = JProcs.getOutputString(command, args);
-        Map<Integer, Snapshot> snaps         = parseSnapshots(commandOutput);
-        boolean                warnUser      = false;
+        Map<Integer, Snapshot> snaps    = getSnapshots(volumePath);
+        boolean                warnUser = false;
         for (Snapshot s : snaps.values()) {
             System.out.println(s + "\n");
             if (s.isSpaceReserving()) {
@@ -81,9 +182,7 @@ public class SnapCommands {
      * @return {@code true} if the volume path matches a Time Machine destination; {@code false} otherwise
      */
     public static boolean isTimeMachineVolume(String volumePath) {
-        String       command       = "tmutil";
-        String[]     args          = {"destinationinfo"};
-        String       commandOutput = JProcs.getOutputString(command, args);
+        String       commandOutput = backend.destinationInfo();
         List<String> mountPoints   = extractMountPoints(commandOutput);
         return mountPoints.contains(volumePath);
     }
@@ -100,11 +199,7 @@ public class SnapCommands {
      * @throws NullPointerException if {@code volumePath} is null
      */
     public static boolean hasSnapshots(String volumePath) {
-        String                 command       = "diskutil";
-        String[]               args          = {"apfs", "listSnapshots", volumePath};
-        String                 commandOutput = JProcs.getOutputString(command, args);
-        Map<Integer, Snapshot> snaps         = parseSnapshots(commandOutput);
-        return !snaps.isEmpty();
+        return !getSnapshots(volumePath).isEmpty();
     }
     
     /**
@@ -119,9 +214,7 @@ public class SnapCommands {
      */
     private static List<String> extractMountPoints(String text) {
         List<String> mounts = new ArrayList<>();
-        Matcher m = Pattern.compile("^\\s*Mount\\s+Point\\s*:\\s*(.+?)\\s*$",
-                                    Pattern.MULTILINE)
-                           .matcher(text);
+        Matcher m = MOUNT_POINT.matcher(text);
         while (m.find()) {
             mounts.add(m.group(1).trim());
         }
@@ -134,6 +227,10 @@ public class SnapCommands {
      * This method invokes the system utility to list snapshots for the specified volume path,
      * parses the output, and builds a map keyed by a 1-based index in discovery order.
      * The values contain snapshot metadata such as disk identifier, UUID, name, XID, and purgeable flag.
+     * <p>
+     * Listings are coalesced per volume: concurrent callers share one in-flight listing, and a completed
+     * listing is reused for a few seconds or until a snapshot is deleted. Each caller receives its own
+     * copy of the map, so callers are free to modify it.
      *
      * @param volumePath the absolute path to the APFS volume whose snapshots should be listed; must not be null or empty
      *
@@ -142,7 +239,90 @@ public class SnapCommands {
      * @throws NullPointerException if {@code volumePath} is null
      */
     public static Map<Integer, Snapshot> getSnapshots(String volumePath) {
-        return parseSnapshots(getSnapString(volumePath));
+        return new HashMap<>(listings.get(volumePath));
+    }
+
+    /**
+     * Returns the shared snapshot listing for the given volume along with the time it was taken.
+     * <p>
+     * Unlike {@link #getSnapshots(String)} the returned map is the unmodifiable instance shared by every
+     * caller of the same listing.
+     *
+     * @param volumePath the absolute path to the APFS volume; must not be null or empty
+     * @param fresh      {@code true} to ignore a cached listing; a listing already in flight is still shared
+     *
+     * @return the listing and the time it completed (never null)
+     */
+    public static SingleFlight.Loaded<Map<Integer, Snapshot>> getListing(String volumePath, boolean fresh) {
+        return listings.fetch(volumePath, fresh);
+    }
+
+    /**
+     * Returns the single-flight layer behind snapshot listings, for reporting how many listings
+     * were executed and how many were shared.
+     *
+     * @return the listing single-flight instance (never null)
+     */
+    public static SingleFlight<String, Map<Integer, Snapshot>> listingStats() {
+        return listings;
+    }
+
+    /**
+     * The outcome of a single snapshot delete.
+     *
+     * @param success {@code true} if the snapshot was deleted
+     * @param error   why the delete failed, or {@code null} if it succeeded
+     * @param detail  the full human-readable account of the attempt, including the command that ran and its output
+     */
+    public record Deletion(boolean success, DeleteError error, String detail) {
+
+        /**
+         * Indicates whether the delete failed for a reason that is expected to clear on its own.
+         *
+         * @return {@code true} if retrying the delete may succeed
+         */
+        public boolean retryable() {
+            return error == DeleteError.TRANSIENT;
+        }
+    }
+
+    /**
+     * Attempts to delete the provided snapshot if it is marked as purgeable, without writing to standard output.
+     * <p>
+     * If purgeable, a delete command is executed and its output or error is captured in the returned detail,
+     * and a failure is classified as transient or permanent from its error output. If not purgeable, the
+     * deletion fails immediately, permanently, and the detail says so.
+     *
+     * @param snapshot the snapshot candidate for deletion; must not be null
+     *
+     * @return the outcome of the attempt (never null)
+     *
+     * @throws NullPointerException if {@code snapshot} is null
+     */
+    public static Deletion delete(Snapshot snapshot) {
+        if (!snapshot.isPurgeable()) {
+            return new Deletion(false, DeleteError.PERMANENT, "The snapshot:\n\t" + snapshot.getName() + "\nIs not purgeable");
+        }
+        Backend.Result pr     = backend.deleteSnapshot(snapshot.getDisk(), Long.toString(snapshot.getXID()));
+        StringBuilder  detail = new StringBuilder();
+        detail.append("Disk: ").append(snapshot.getDisk()).append(" ****\n");
+        detail.append("Ran:\n");
+        detail.append("\t").append(pr.commandLine()).append("\n");
+        if (pr.exitValue() != 0) {
+            detail.append("\nError deleting snapshot: ").append(snapshot.getName()).append("\n\n");
+            detail.append(pr.error());
+            return new Deletion(false, DeleteError.classify(pr.error() + "\n" + pr.output()), detail.toString());
+        }
+        String volumePath = diskVolumes.get(snapshot.getDisk());
+        if (volumePath != null) {
+            listings.invalidate(volumePath);
+        }
+        else {
+            listings.invalidateAll();
+        }
+        detail.append("\n").append(pr.output()).append("\n");
+        detail.append("SUCCESS!");
+        return new Deletion(true, null, detail.toString());
     }
 
     /**
@@ -158,125 +338,131 @@ public class SnapCommands {
      * @throws NullPointerException if {@code snapshot} is null
      */
     public static boolean purge(Snapshot snapshot) {
-        if (snapshot.isPurgeable()) {
-            String     command = "diskutil";
-            String[]   args    = {"apfs", "deleteSnapshot", snapshot.getDisk(), "-xid", snapshot.getXID()};
-            ProcResult pr      = JProcs.getResultsOf(command, args);
-            System.out.println("Disk: " + snapshot.getDisk() + " ****");
-            System.out.println("Ran:");
-            System.out.println("\t" + pr.getCommandLine());
-            if (pr.getExitValue() != 0) {
-                System.out.println("\nError deleting snapshot: " + snapshot.getName() + "\n");
-                System.out.println(pr.getErrorString());
-                return false;
-            }
-            System.out.println("\n" + pr.getOutputString());
-            System.out.println("SUCCESS!");
-            return true;
+        Deletion deletion = delete(snapshot);
+        System.out.println(deletion.detail());
+        if (!snapshot.isPurgeable()) {
+            sleep(1500, TimeUnit.MILLISECONDS);
         }
-        System.out.println("The snapshot:\n\t" + snapshot.getName() + "\nIs not purgeable");
-        sleep(1500, TimeUnit.MILLISECONDS);
-        return false;
+        return deletion.success();
+    }
+
+    /**
+     * Parses a captured {@code diskutil apfs listSnapshots} listing, the same way listings of a volume are parsed.
+     * <p>
+     * This lets the parser be checked against the output of a real system without touching any volume.
+     *
+     * @param listing the raw text of a snapshot listing; must not be null
+     *
+     * @return an unmodifiable map of 1-based indices to parsed snapshots; an empty map if the listing has none
+     *
+     * @throws IllegalStateException if an entry of the listing cannot be parsed
+     */
+    public static Map<Integer, Snapshot> parseListing(String listing) {
+        return Collections.unmodifiableMap(parseSnapshots(listing));
     }
 
     /**
      * Parses the textual output of a snapshot listing into a map of snapshot objects.
      * <p>
      * The returned map is keyed by a 1-based index corresponding to the discovery order in the input text.
-     * Each entry includes snapshot metadata extracted from the provided string.
+     * Each entry includes snapshot metadata extracted from the provided string. XIDs and UUIDs are parsed
+     * here, once, into immutable {@link Snapshot} instances that every later caller shares.
+     * <p>
+     * Every entry of the listing starts with a {@code +--} line. An entry that does not have the expected
+     * UUID, name, XID and purgeable lines is never skipped: a snapshot missing from the map would look
+     * deleted to every caller, so the whole listing is rejected instead.
      *
      * @param parseString the raw text output containing snapshot information; must not be null
      *
      * @return a map of 1-based indices to parsed snapshots; an empty map if no snapshots are found
      *
-     * @throws NullPointerException if {@code parseString} is null
+     * @throws NullPointerException  if {@code parseString} is null
+     * @throws IllegalStateException if an entry of the listing cannot be parsed
      */
     private static Map<Integer, Snapshot> parseSnapshots(String parseString) {
         String disk = "";
-        //Matcher diskM = Pattern.compile("^Snapshots\\s+for\\s+(\\S+)", Pattern.MULTILINE).matcher(parseString);
-        Matcher diskM = Pattern.compile("^Snapshots?\\s+for\\s+(\\S+)", Pattern.MULTILINE).matcher(parseString);
+        Matcher diskM = SNAPSHOT_DISK.matcher(parseString);
 
         if (diskM.find()) disk = diskM.group(1);
 
-        Pattern entry = Pattern.compile(
-                "^\\+--\\s+([0-9A-Fa-f-]{36})\\R" +                  // UUID
-                "^(?:\\|\\s+|\\s{2,})Name:\\s+(.*?)\\R" +            // Name
-                "^(?:\\|\\s+|\\s{2,})XID:\\s+(\\d+)\\R" +            // XID
-                "^(?:\\|\\s+|\\s{2,})Purgeable:\\s+(Yes|No)\\b",     // Purgeable
-                Pattern.MULTILINE
-                                       );
-
         Map<Integer, Snapshot> snapMap = new HashMap<>();
-        Matcher                m       = entry.matcher(parseString);
+        Matcher                starts  = ENTRY_START.matcher(parseString);
+        Matcher                m       = SNAPSHOT_ENTRY.matcher(parseString);
         int                    idx     = 1;
-        while (m.find()) {
-            String   uuid      = m.group(1);
-            String   name      = m.group(2).trim();
-            String   xid       = m.group(3).trim();
-            boolean  purgeable = m.group(4).equalsIgnoreCase("Yes");
-            Snapshot snapshot  = new Snapshot(disk, uuid, name, xid, purgeable);
-            int      noteStart = m.end();
-            int      noteEnd   = parseString.indexOf("+--", noteStart);
-            if (noteEnd == -1) noteEnd = parseString.length();
-            String snapshotBlock = parseString.substring(noteStart, noteEnd);
-            if (snapshotBlock.toLowerCase().contains("this snapshot limits the minimum size")) {
-                snapshot.setSpaceReserving(true);
+        boolean                more    = starts.find();
+        while (more) {
+            int entryStart = starts.start();
+            more = starts.find();
+            int entryEnd = more ? starts.start() : parseString.length();
+            m.region(entryStart, entryEnd);
+            if (!m.lookingAt()) {
+                throw unrecognized(parseString.substring(entryStart, entryEnd));
+            }
+            UUID    uuid      = UUID.fromString(m.group(1));
+            String  name      = m.group(2).trim();
+            long    xid;
+            try {
+                xid = Long.parseLong(m.group(3));
+            }
+            catch (NumberFormatException e) {
+                throw unrecognized(parseString.substring(entryStart, entryEnd));
             }
-            snapMap.put(idx, snapshot);
+            boolean purgeable     = m.group(4).equalsIgnoreCase("Yes");
+            String  snapshotBlock = parseString.substring(m.end(), entryEnd);
+            boolean reserving     = snapshotBlock.toLowerCase().contains("this snapshot limits the minimum size");
+            snapMap.put(idx, new Snapshot(disk, uuid, name, xid, purgeable, reserving));
             idx++;
         }
         return snapMap;
     }
 
+    private static IllegalStateException unrecognized(String entry) {
+        return new IllegalStateException("Unrecognized snapshot entry in the diskutil listing:\n\n" + entry.strip());
+    }
+
     /**
      * Attempts to delete all snapshots present on the specified APFS volume.
      * <p>
-     * This method retrieves the current snapshot list for the volume and calls {@link #purge(Snapshot)}
-     * for each snapshot. Processing continues even if individual deletions fail.
+     * This method retrieves the current snapshot list for the volume and hands it, in the order given by
+     * {@link #purgeOrder(Map)}, to a {@link PurgeExecutor} which calls {@link #delete(Snapshot)} for each
+     * snapshot and reports every outcome to the listener. Processing continues even if individual
+     * deletions fail.
      *
      * @param volumePath the absolute path to the APFS volume; must not be null or empty
+     * @param listener   receives progress as snapshots are deleted; must not be null
      *
-     * @return {@code true} if every snapshot was deleted successfully; {@code false} if any deletion failed
+     * @return the report of the purge; {@link PurgeReport#success()} is {@code false} if any deletion failed
      *
      * @throws NullPointerException if {@code volumePath} is null
      */
-    public static boolean purgeAll(String volumePath) {
-        boolean                success           = true;
-        Map<Integer, Snapshot> map               = getSnapshots(volumePath);
-        int                    spaceIdx          = 0;
-        boolean                hasSpaceReserving = false;
-        for (int idx : map.keySet()) {
-            Snapshot s = map.get(idx);
-            if (s.isSpaceReserving()) {
-                hasSpaceReserving = true;
-                spaceIdx          = idx;
-                break;
-            }
-        }
+    public static PurgeReport purgeAll(String volumePath, PurgeListener listener) {
+        return new PurgeExecutor(listener).run(volumePath, purgeOrder(getSnapshots(volumePath)));
+    }
 
-        if (hasSpaceReserving) {
-            Snapshot space = map.get(spaceIdx);
-            if (!purge(space)) {
-                success = false;
+    /**
+     * Returns the given snapshots in the order they should be deleted.
+     * <p>
+     * A snapshot that limits the minimum size of the APFS Container is placed first, since deleting it
+     * recovers the most space. The remaining snapshots follow in descending index order, newest first.
+     *
+     * @param snapshots a map of 1-based indices to snapshots, as returned by {@link #getSnapshots(String)}; must not be null
+     *
+     * @return a new list holding every snapshot in purge order (never null, may be empty)
+     */
+    public static List<Snapshot> purgeOrder(Map<Integer, Snapshot> snapshots) {
+        List<Integer> keys = new ArrayList<>(snapshots.keySet());
+        keys.sort(Comparator.reverseOrder());
+        List<Snapshot> order = new ArrayList<>(keys.size());
+        for (int idx : keys) {
+            Snapshot s = snapshots.get(idx);
+            if (s.isSpaceReserving()) {
+                order.addFirst(s);
             }
             else {
-                map.remove(spaceIdx);
-            }
-        }
-
-        int start = map.size();
-        int end   = 1;
-        for (int x = start; x >= end; x--) {
-            Snapshot snapshot = map.get(x);
-            if (snapshot == null) {
-                System.out.println("There was a null snapshot at index: " + x + "\nThe map size is: " + map.size() + "\nOpen an Issue at https://github.com/EasyG0ing1/SnapZap/issues\n");
-                System.exit(1);
-            }
-            if (!purge(snapshot)) {
-                success = false;
+                order.add(s);
             }
         }
-        return success;
+        return order;
     }
 
     /**
@@ -0,0 +1,133 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The LatencyHistory class remembers how long snapshot deletes have taken on this machine.
+ * <p>
+ * After every purge the average delete latency and retry rate of the run are folded into a running
+ * average stored in {@code ~/.snapzap/history.properties}, keyed by backend. Only the most recent
+ * {@value #MAX_WEIGHT} deletes carry weight, so the averages follow changes in hardware or load. The
+ * history is used to estimate how long a purge will take before it runs.
+ * <p>
+ * Runs that only exercise SnapZap, such as benchmarks and training runs against the simulated backend,
+ * disable the history so they neither read nor write the file.
+ * <p>
+ * The history is a convenience: if it cannot be read or written, estimates fall back to defaults and
+ * purges are unaffected.
+ */
+public class LatencyHistory {
+
+    private static final int  MAX_WEIGHT = 1000;
+    private static final Path FILE       = Path.of(System.getProperty("user.home"), ".snapzap", "history.properties");
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * Turns the history off for the rest of the run: nothing is recorded and no statistics are known.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * The historical delete statistics for one backend.
+     *
+     * @param samples     the number of deletes the averages are based on (capped)
+     * @param meanMillis  the average wall-clock time of a single delete attempt, in milliseconds
+     * @param retryRate   the average number of retries per delete
+     */
+    public record Stats(long samples, double meanMillis, double retryRate) {
+
+        /**
+         * Indicates whether any history exists.
+         *
+         * @return {@code true} if at least one delete has been recorded
+         */
+        public boolean known() {
+            return samples > 0;
+        }
+    }
+
+    /**
+     * Returns the recorded delete statistics for the backend in use.
+     *
+     * @return the statistics; {@link Stats#known()} is {@code false} if nothing has been recorded or the
+     *         history is disabled
+     */
+    public static synchronized Stats load() {
+        if (!enabled) {
+            return new Stats(0, 0, 0);
+        }
+        Properties props  = read();
+        String     prefix = SnapCommands.backendName() + ".delete.";
+        try {
+            return new Stats(Long.parseLong(props.getProperty(prefix + "samples", "0")),
+                             Double.parseDouble(props.getProperty(prefix + "meanMillis", "0")),
+                             Double.parseDouble(props.getProperty(prefix + "retryRate", "0")));
+        }
+        catch (NumberFormatException e) {
+            return new Stats(0, 0, 0);
+        }
+    }
+
+    /**
+     * Folds the delete latencies of a finished purge into the history.
+     *
+     * @param report the finished report; reports without timed delete attempts are ignored, as is every
+     *               report while the history is disabled
+     */
+    public static synchronized void record(PurgeReport report) {
+        int attempts = report.getAttempts();
+        if (!enabled || attempts == 0) {
+            return;
+        }
+        int    deletes    = Math.max(1, attempts - report.getRetries());
+        double runMillis  = report.getAttemptNanos() / 1e6 / attempts;
+        double runRetries = (double) report.getRetries() / deletes;
+        Stats  old        = load();
+        long   weight     = Math.min(old.samples(), MAX_WEIGHT);
+        long   total      = weight + deletes;
+        double mean       = (old.meanMillis() * weight + runMillis * deletes) / total;
+        double retryRate  = (old.retryRate() * weight + runRetries * deletes) / total;
+
+        Properties props  = read();
+        String     prefix = SnapCommands.backendName() + ".delete.";
+        props.setProperty(prefix + "samples", Long.toString(Math.min(total, MAX_WEIGHT)));
+        props.setProperty(prefix + "meanMillis", String.format(Locale.ROOT, "%.1f", mean));
+        props.setProperty(prefix + "retryRate", String.format(Locale.ROOT, "%.4f", retryRate));
+        try {
+            Files.createDirectories(FILE.getParent());
+            Path tmp = Files.createTempFile(FILE.getParent(), "history", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "SnapZap delete latency history");
+            }
+            Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ignored) {
+            // History is best effort; a purge must never fail because it could not be recorded.
+        }
+    }
+
+    private static Properties read() {
+        Properties props = new Properties();
+        if (Files.exists(FILE)) {
+            try (InputStream in = Files.newInputStream(FILE)) {
+                props.load(in);
+            }
+            catch (IOException ignored) {
+                // Treat an unreadable history as empty.
+            }
+        }
+        return props;
+    }
+}
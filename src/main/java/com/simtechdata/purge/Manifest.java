@@ -0,0 +1,129 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * The Manifest class purges the snapshots listed in a newline-delimited manifest.
+ * <p>
+ * Each non-blank line of the manifest names one snapshot by its XID or its UUID; text after a
+ * {@code #} is ignored. The manifest is streamed line by line and each entry is resolved against a
+ * hash index of the volume's current inventory, so memory use depends only on the number of snapshots
+ * on the volume, never on the size of the manifest. Entries that do not match any snapshot are reported
+ * as they are read. Once the manifest is consumed the matched snapshots are deleted, in purge order,
+ * by a {@link PurgeExecutor}.
+ */
+public class Manifest {
+
+    private static final Pattern XID = Pattern.compile("\\d+");
+
+    /**
+     * Creates a manifest purge for the given volume.
+     *
+     * @param volumePath the absolute path to the APFS volume; must not be null or empty
+     */
+    public Manifest(String volumePath) {
+        this.volumePath = volumePath;
+    }
+
+    private final String volumePath;
+
+    /**
+     * Reads the manifest from a file, or from standard input when {@code source} is {@code -}, and
+     * purges every snapshot it names.
+     *
+     * @param source   the manifest file path, or {@code -} for standard input; must not be null
+     * @param listener receives progress as the matched snapshots are deleted; must not be null
+     * @return 0 if every matched snapshot was deleted; 1 if the manifest could not be read or any delete failed
+     */
+    public int purgeFrom(String source, PurgeListener listener) {
+        if (SnapCommands.isTimeMachineVolume(volumePath)) {
+            System.out.println("\n" + volumePath + " is a TIME MACHINE volume. Use the menu to delete its snapshots.\n");
+            return 1;
+        }
+        Map<Integer, Snapshot> inventory = SnapCommands.getSnapshots(volumePath);
+        Map<Long, Integer>     byXid     = HashMap.newHashMap(inventory.size());
+        Map<UUID, Integer>     byUuid    = HashMap.newHashMap(inventory.size());
+        Map<Integer, Snapshot> matched   = new HashMap<>();
+        int                    entries   = 0;
+        int                    unknown   = 0;
+        int                    lineNo    = 0;
+        for (Map.Entry<Integer, Snapshot> snapshot : inventory.entrySet()) {
+            byXid.put(snapshot.getValue().getXID(), snapshot.getKey());
+            byUuid.put(snapshot.getValue().getUUID(), snapshot.getKey());
+        }
+        try (BufferedReader reader = open(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                int    hash  = line.indexOf('#');
+                String entry = (hash == -1 ? line : line.substring(0, hash)).trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                entries++;
+                Integer idx = lookup(entry, byXid, byUuid);
+                if (idx == null) {
+                    unknown++;
+                    System.out.println("Unknown manifest entry on line " + lineNo + ": " + entry);
+                    continue;
+                }
+                matched.put(idx, inventory.get(idx));
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Could not read manifest " + source + ": " + e.getMessage());
+            return 1;
+        }
+        System.out.printf("%nManifest: %d entries, %d snapshots matched, %d unknown%n%n", entries, matched.size(), unknown);
+        if (matched.isEmpty()) {
+            return 0;
+        }
+        PurgeReport report = new PurgeExecutor(listener).run(volumePath, SnapCommands.purgeOrder(matched));
+        System.out.println("\n" + report.render());
+        if (!report.success()) {
+            System.out.println("One or more snapshots failed to be deleted, re-check the volume and try again.");
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Resolves one manifest entry to the inventory index of the snapshot it names.
+     *
+     * @param entry  the entry, an XID or a UUID in any case; must not be null
+     * @param byXid  the inventory indices keyed by XID; must not be null
+     * @param byUuid the inventory indices keyed by UUID; must not be null
+     * @return the 1-based inventory index, or {@code null} if the entry does not name a snapshot on the volume
+     */
+    private static Integer lookup(String entry, Map<Long, Integer> byXid, Map<UUID, Integer> byUuid) {
+        try {
+            if (XID.matcher(entry).matches()) {
+                // An XID too large for a long cannot name a snapshot; parseLong rejects it like the listing parser does.
+                return byXid.get(Long.parseLong(entry));
+            }
+            return byUuid.get(UUID.fromString(entry));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static BufferedReader open(String source) throws IOException {
+        if (source.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8);
+    }
+}
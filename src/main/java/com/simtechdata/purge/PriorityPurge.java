@@ -0,0 +1,209 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+
+/**
+ * The PriorityPurge class frees space across several volumes by deleting the most valuable snapshots first,
+ * and stops as soon as enough space is free.
+ * <p>
+ * The purgeable snapshots of every selected volume go into one priority queue. Space-reserving snapshots
+ * come first, because deleting one releases the most space. The rest are ordered by the free space of their
+ * APFS Container, fullest first, and then by age, oldest first. Age is the XID within a volume; between
+ * volumes it is the timestamp in the snapshot names, or the XID when either name carries none.
+ * <p>
+ * Volumes in the same container share its free space, so they are ranked, measured and reported together.
+ * Snapshots are deleted one at a time. After each delete the container's free space is measured again and
+ * the snapshots of every selected volume in it are re-ranked; once the container has at least the target free
+ * space, all of them leave the queue. The purge ends when every container has reached the target or nothing
+ * purgeable is left. Time Machine volumes and volumes whose free space cannot be determined are never touched.
+ */
+public class PriorityPurge {
+
+    /**
+     * Creates a priority purge of the given volumes.
+     *
+     * @param volumePaths the absolute paths to the APFS volumes to free space on; must not be null
+     * @param targetFree  the container free space, in bytes, at which a volume needs no more deletes
+     */
+    public PriorityPurge(List<String> volumePaths, long targetFree) {
+        this.volumePaths = volumePaths;
+        this.targetFree  = targetFree;
+    }
+
+    private final List<String>              volumePaths;
+    private final long                      targetFree;
+    private final RetryPolicy               retryPolicy = RetryPolicy.DEFAULT;
+    private final Map<String, Long>         free        = new HashMap<>();
+    private final Map<String, List<String>> volumesIn   = new LinkedHashMap<>();
+    private final PriorityQueue<Candidate>  queue       = new PriorityQueue<>(Comparator.comparing((Candidate c) -> !c.snapshot().isSpaceReserving())
+                                                                                        .thenComparingLong(c -> free.get(c.container()))
+                                                                                        .thenComparing(PriorityPurge::byAge));
+
+    /**
+     * A snapshot waiting in the queue.
+     *
+     * @param container  the APFS Container of the snapshot's volume
+     * @param volumePath the volume the snapshot belongs to
+     * @param snapshot   the snapshot
+     */
+    private record Candidate(String container, String volumePath, Snapshot snapshot) {}
+
+    /**
+     * Builds the queue, asks for confirmation unless {@code assumeYes} is set, and deletes snapshots until
+     * every container has the target free space.
+     *
+     * @param assumeYes {@code true} to skip the confirmation prompt
+     * @param listener  receives progress as snapshots are deleted; it is started without a total, because the
+     *                  purge stops as soon as the target is reached, and its {@code finished} method is called
+     *                  with the report of the fullest container; must not be null
+     * @return 0 if the target was reached on every container or the user canceled; 1 if the target was not
+     *         reached or a delete failed
+     */
+    public int run(boolean assumeYes, PurgeListener listener) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String volumePath : volumePaths) {
+            if (SnapCommands.isTimeMachineVolume(volumePath)) {
+                System.out.println(volumePath + " is a TIME MACHINE volume and is skipped. Use the menu to delete its snapshots.");
+                continue;
+            }
+            String container = SnapCommands.containerOf(volumePath);
+            if (container == null) {
+                container = volumePath;
+            }
+            Long space = free.get(container);
+            if (space == null) {
+                space = SnapCommands.containerFreeSpace(volumePath);
+                if (space < 0) {
+                    System.out.println(volumePath + " is skipped because its free space cannot be determined.");
+                    continue;
+                }
+                free.put(container, space);
+            }
+            if (space >= targetFree) {
+                System.out.printf("%s already has %s free.%n", volumePath, PurgeReport.bytes(space));
+                continue;
+            }
+            volumesIn.computeIfAbsent(container, c -> new ArrayList<>()).add(volumePath);
+            int count = counts.getOrDefault(container, 0);
+            for (Snapshot snapshot : SnapCommands.getSnapshots(volumePath).values()) {
+                if (snapshot.isPurgeable()) {
+                    queue.add(new Candidate(container, volumePath, snapshot));
+                    count++;
+                }
+            }
+            counts.put(container, count);
+        }
+        if (counts.isEmpty()) {
+            System.out.printf("%nEvery volume already has at least %s free. No snapshots were deleted.%n%n", PurgeReport.bytes(targetFree));
+            return 0;
+        }
+        if (queue.isEmpty()) {
+            System.out.println("\nThere are no purgeable snapshots on the volumes that need space.\n");
+            return 1;
+        }
+
+        List<String> fullest = new ArrayList<>(counts.keySet());
+        fullest.sort(Comparator.comparingLong(free::get));
+        System.out.printf("%nFreeing space until each container has %s free, fullest first:%n%n", PurgeReport.bytes(targetFree));
+        for (String container : fullest) {
+            System.out.printf("\t%-30s %10s free, %d purgeable snapshots%n", label(container), PurgeReport.bytes(free.get(container)), counts.get(container));
+        }
+        if (assumeYes) {
+            System.out.println();
+        }
+        else {
+            System.out.print("\nWARNING: Snapshots will be DELETED until the target is reached.\n\nAre you sure you want to proceed (Y/N)? ");
+            String response = new Scanner(System.in).nextLine();
+            if (response.equalsIgnoreCase("N")) {
+                System.out.println("\nNo snapshots were deleted\n");
+                return 0;
+            }
+        }
+
+        Map<String, PurgeReport> reports = new LinkedHashMap<>();
+        for (String container : fullest) {
+            PurgeReport report = new PurgeReport(volumesIn.get(container).getFirst());
+            report.start(counts.get(container));
+            reports.put(container, report);
+        }
+        PurgeExecutor executor  = new PurgeExecutor(1, retryPolicy, listener);
+        int           attempted = 0;
+        listener.started(PurgeListener.UNKNOWN_TOTAL);
+        try {
+            while (!queue.isEmpty()) {
+                Candidate   next   = queue.poll();
+                PurgeReport report = reports.get(next.container());
+                int         purged = report.getPurged();
+                attempted++;
+                executor.delete(List.of(next.snapshot()), report);
+                if (report.getPurged() == purged) {
+                    continue;
+                }
+                String          container = next.container();
+                long            space     = SnapCommands.containerFreeSpace(next.volumePath());
+                List<Candidate> rest      = new ArrayList<>();
+                queue.removeIf(c -> c.container().equals(container) && rest.add(c));
+                if (space >= 0 && space < targetFree) {
+                    free.put(container, space);
+                    queue.addAll(rest);
+                }
+            }
+        }
+        finally {
+            for (PurgeReport report : reports.values()) {
+                report.finish();
+                LatencyHistory.record(report);
+            }
+            listener.finished(reports.values().iterator().next());
+        }
+
+        boolean success = true;
+        int     deleted = 0;
+        for (Map.Entry<String, PurgeReport> entry : reports.entrySet()) {
+            PurgeReport report = entry.getValue();
+            long        space  = report.getSamples().getLast().free();
+            System.out.printf("%n%s (%s free)%n%s", label(entry.getKey()), PurgeReport.bytes(space), report.render());
+            success &= report.success() && space >= targetFree;
+            deleted += report.getPurged();
+        }
+        int left = counts.values().stream().mapToInt(Integer::intValue).sum() - attempted;
+        System.out.printf("%n%d snapshots deleted, %d purgeable snapshots left in place.%n", deleted, left);
+        if (!success) {
+            System.out.printf("The target of %s free was not reached on every volume.%n", PurgeReport.bytes(targetFree));
+        }
+        return success ? 0 : 1;
+    }
+
+    /**
+     * Names a container by the selected volume in it, or by the container and every selected volume in it
+     * when there are several.
+     */
+    private String label(String container) {
+        List<String> volumes = volumesIn.get(container);
+        return volumes.size() == 1 ? volumes.getFirst() : container + ": " + String.join(", ", volumes);
+    }
+
+    /**
+     * Orders two candidates oldest first: by the timestamps in their names when they are on different volumes
+     * and both names carry one, otherwise by XID.
+     */
+    private static int byAge(Candidate a, Candidate b) {
+        Instant createdA = a.snapshot().getCreated();
+        Instant createdB = b.snapshot().getCreated();
+        if (!a.volumePath().equals(b.volumePath()) && createdA != null && createdB != null) {
+            return createdA.compareTo(createdB);
+        }
+        return Long.compare(a.snapshot().getXID(), b.snapshot().getXID());
+    }
+}
@@ -0,0 +1,232 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.DeleteError;
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The PurgeExecutor class deletes a batch of snapshots with a bounded number of workers.
+ * <p>
+ * A batch is expected in purge order (see {@link SnapCommands#purgeOrder(java.util.Map)}). A leading
+ * space-reserving snapshot is always deleted on its own before anything else, because removing it
+ * releases the most space; the rest of the batch is then spread across the workers. With a single
+ * worker the batch is deleted one snapshot at a time, in order. Deletes that fail for a transient
+ * reason, such as the volume being busy, are retried according to a {@link RetryPolicy} on a scheduler
+ * that never holds up the other workers. Every run is accounted for in a
+ * {@link PurgeReport}, and each delete is reported to the executor's {@link PurgeListener}; the executor
+ * itself never writes to standard output.
+ */
+public class PurgeExecutor {
+
+    private static volatile int defaultWorkers = 1;
+
+    /**
+     * Sets the number of concurrent deletes used by executors created with {@link #PurgeExecutor()}.
+     *
+     * @param workers the number of concurrent deletes; values below 1 are treated as 1
+     */
+    public static void setDefaultWorkers(int workers) {
+        defaultWorkers = Math.max(1, workers);
+    }
+
+    /**
+     * Creates an executor using the default number of workers and no listener.
+     */
+    public PurgeExecutor() {
+        this(defaultWorkers, RetryPolicy.DEFAULT, PurgeListener.NONE);
+    }
+
+    /**
+     * Creates an executor using the default number of workers.
+     *
+     * @param listener receives progress as snapshots are deleted; must not be null
+     */
+    public PurgeExecutor(PurgeListener listener) {
+        this(defaultWorkers, RetryPolicy.DEFAULT, listener);
+    }
+
+    /**
+     * Creates an executor with the given number of workers and retry policy.
+     *
+     * @param workers     the number of concurrent deletes; values below 1 are treated as 1
+     * @param retryPolicy decides how transiently failed deletes are retried; must not be null
+     * @param listener    receives progress as snapshots are deleted; must not be null
+     */
+    public PurgeExecutor(int workers, RetryPolicy retryPolicy, PurgeListener listener) {
+        this.workers     = Math.max(1, workers);
+        this.retryPolicy = retryPolicy;
+        this.listener    = listener;
+    }
+
+    private final int           workers;
+    private final RetryPolicy   retryPolicy;
+    private final PurgeListener listener;
+
+    /**
+     * Deletes every snapshot in the batch and waits for all deletes to finish.
+     *
+     * @param volumePath the absolute path to the APFS volume the batch belongs to; must not be null
+     * @param batch      the snapshots to delete, in purge order; must not be null
+     * @return the finished report of the purge (never null)
+     */
+    public PurgeReport run(String volumePath, List<Snapshot> batch) {
+        return run(batch, new PurgeReport(volumePath));
+    }
+
+    /**
+     * Deletes every snapshot in the batch, recording progress and reclaimed space in the given report,
+     * and waits for all deletes to finish.
+     * <p>
+     * The report is updated as each delete completes, so another thread may read it while the batch runs.
+     *
+     * @param batch  the snapshots to delete, in purge order; must not be null
+     * @param report a report that has not been used before; must not be null
+     * @return the given report, finished (never null)
+     */
+    public PurgeReport run(List<Snapshot> batch, PurgeReport report) {
+        report.start(batch.size());
+        listener.started(batch.size());
+        try {
+            delete(batch, report);
+            return report;
+        }
+        finally {
+            listener.finished(report.finish());
+            LatencyHistory.record(report);
+        }
+    }
+
+    /**
+     * Deletes every snapshot in the batch into a report that has already been started, and waits for all
+     * deletes to finish.
+     * <p>
+     * Unlike {@link #run(List, PurgeReport)}, this neither starts nor finishes the report and does not tell
+     * the listener that a run started or finished, so a caller that decides what to delete next from the
+     * outcome of each delete can feed its deletes through here one batch at a time.
+     *
+     * @param batch  the snapshots to delete, in purge order; must not be null
+     * @param report the started report to record the deletes in; must not be null
+     */
+    void delete(List<Snapshot> batch, PurgeReport report) {
+        try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofVirtual().name("purge-", 1).factory());
+             ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("purge-retry").factory())) {
+            List<Snapshot> rest = batch;
+            if (!batch.isEmpty() && batch.getFirst().isSpaceReserving()) {
+                new Phase(List.of(batch.getFirst()), pool, scheduler, report).run();
+                rest = batch.subList(1, batch.size());
+            }
+            new Phase(rest, pool, scheduler, report).run();
+        }
+    }
+
+    /**
+     * A set of deletes that run together and complete together, including any retries.
+     * <p>
+     * Workers never wait out a retry delay: a delete that fails transiently is handed to the scheduler,
+     * which resubmits it to the worker pool once its backoff has elapsed, leaving the worker free to move
+     * on to the next snapshot in the meantime.
+     */
+    private final class Phase {
+
+        private final List<Snapshot>                    snapshots;
+        private final ExecutorService                   pool;
+        private final ScheduledExecutorService          scheduler;
+        private final PurgeReport                       report;
+        private final CountDownLatch                    remaining;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Phase(List<Snapshot> snapshots, ExecutorService pool, ScheduledExecutorService scheduler, PurgeReport report) {
+            this.snapshots = snapshots;
+            this.pool      = pool;
+            this.scheduler = scheduler;
+            this.report    = report;
+            this.remaining = new CountDownLatch(snapshots.size());
+        }
+
+        /**
+         * Submits every delete in the phase and waits until each has succeeded or given up.
+         *
+         * @throws RuntimeException the first exception thrown while recording or reporting a delete, once
+         *                          every delete of the phase has completed
+         */
+        void run() {
+            for (Snapshot snapshot : snapshots) {
+                pool.execute(() -> attempt(snapshot, 1));
+            }
+            try {
+                remaining.await();
+            }
+            catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        private void attempt(Snapshot snapshot, int attempt) {
+            SnapCommands.Deletion deletion;
+            long                  start = System.nanoTime();
+            try {
+                deletion = SnapCommands.delete(snapshot);
+                if (snapshot.isPurgeable()) {
+                    report.recordAttempt(System.nanoTime() - start);
+                }
+            }
+            catch (RuntimeException e) {
+                deletion = new SnapCommands.Deletion(false, DeleteError.PERMANENT, "Error deleting snapshot: " + snapshot.getName() + "\n\n" + e);
+            }
+            if (deletion.retryable() && retryPolicy.allowsRetry(attempt)) {
+                Duration              delay  = retryPolicy.delayAfter(attempt);
+                SnapCommands.Deletion failed = deletion;
+                report.recordRetry();
+                listener.retrying(snapshot, deletion, attempt, delay);
+                try {
+                    scheduler.schedule(() -> resubmit(snapshot, attempt + 1, failed), delay.toMillis(), TimeUnit.MILLISECONDS);
+                    return;
+                }
+                catch (RejectedExecutionException ignored) {
+                    // The run is shutting down; report the last failure instead of retrying.
+                }
+            }
+            complete(snapshot, deletion);
+        }
+
+        private void resubmit(Snapshot snapshot, int attempt, SnapCommands.Deletion lastFailure) {
+            try {
+                pool.execute(() -> attempt(snapshot, attempt));
+            }
+            catch (RejectedExecutionException ignored) {
+                complete(snapshot, lastFailure);
+            }
+        }
+
+        /**
+         * Records the final outcome of a delete. The phase always counts the delete as done, even if recording
+         * it throws, so that {@link #run()} never waits forever; the exception is passed on by {@link #run()}.
+         */
+        private void complete(Snapshot snapshot, SnapCommands.Deletion deletion) {
+            try {
+                report.record(snapshot, deletion.success());
+                listener.deleted(snapshot, deletion);
+            }
+            catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            finally {
+                remaining.countDown();
+            }
+        }
+    }
+}
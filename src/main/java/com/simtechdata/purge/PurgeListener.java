@@ -0,0 +1,59 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+
+import java.time.Duration;
+
+/**
+ * A PurgeListener is told about the progress of a purge run by a {@link PurgeExecutor}.
+ * <p>
+ * {@link #deleted(Snapshot, SnapCommands.Deletion)} is called once per snapshot, after its final attempt.
+ * Listener methods are called from the executor's worker threads, possibly concurrently, so implementations must be thread-safe and should return quickly.
+ */
+public interface PurgeListener {
+
+    /**
+     * A listener that ignores every event.
+     */
+    PurgeListener NONE = new PurgeListener() {};
+
+    /**
+     * The total passed to {@link #started(int)} by a purge that stops once a goal is met, such as a target
+     * amount of free space, and so cannot tell in advance how many snapshots it will delete.
+     */
+    int UNKNOWN_TOTAL = -1;
+
+    /**
+     * Called once before the first delete.
+     *
+     * @param total the number of snapshots the purge will attempt to delete, or {@link #UNKNOWN_TOTAL}
+     */
+    default void started(int total) {}
+
+    /**
+     * Called after each delete attempt, successful or not.
+     *
+     * @param snapshot the snapshot that was attempted
+     * @param deletion the outcome of the attempt
+     */
+    default void deleted(Snapshot snapshot, SnapCommands.Deletion deletion) {}
+
+    /**
+     * Called when a delete failed for a transient reason and will be attempted again after a delay.
+     *
+     * @param snapshot the snapshot that will be retried
+     * @param deletion the failed attempt
+     * @param attempt  the 1-based number of the attempt that failed
+     * @param delay    how long until the next attempt
+     */
+    default void retrying(Snapshot snapshot, SnapCommands.Deletion deletion, int attempt, Duration delay) {}
+
+    /**
+     * Called once after the last delete has completed.
+     *
+     * @param report the finished report of the purge; a purge across several volumes passes the report of the
+     *               first volume it worked on and prints the report of every volume itself
+     */
+    default void finished(PurgeReport report) {}
+}
@@ -0,0 +1,214 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+import com.simtechdata.util.Json;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The PurgePlan class describes what {@code --purgeAll} would do to a volume, without deleting anything.
+ * <p>
+ * A plan is built from a single snapshot listing. It holds every snapshot in the order
+ * {@link SnapCommands#purgeOrder(Map)} would delete them, marks the ones that would be skipped because
+ * they are not purgeable, counts the subprocess calls the purge is expected to make, and estimates how
+ * long it would take from the delete latency recorded in {@link LatencyHistory}. When no history exists
+ * yet, a delete is assumed to take {@value #ASSUMED_DELETE_MILLIS} ms and the estimate says so.
+ */
+public class PurgePlan {
+
+    private static final long ASSUMED_DELETE_MILLIS = 1000;
+
+    /**
+     * Builds the plan for purging every snapshot on the given volume.
+     *
+     * @param volumePath the absolute path to the APFS volume; must not be null or empty
+     * @param workers    the number of concurrent deletes the purge would use; values below 1 are treated as 1
+     * @return the plan (never null)
+     */
+    public static PurgePlan build(String volumePath, int workers) {
+        return new PurgePlan(volumePath,
+                             SnapCommands.purgeOrder(SnapCommands.getSnapshots(volumePath)),
+                             SnapCommands.isTimeMachineVolume(volumePath),
+                             Math.max(1, workers),
+                             LatencyHistory.load());
+    }
+
+    private PurgePlan(String volumePath, List<Snapshot> order, boolean timeMachine, int workers, LatencyHistory.Stats history) {
+        this.volumePath  = volumePath;
+        this.timeMachine = timeMachine;
+        this.workers     = workers;
+        this.history     = history;
+        List<Step> steps     = new ArrayList<>(order.size());
+        int        deletes   = 0;
+        boolean    reserving = false;
+        for (Snapshot snapshot : order) {
+            Action action = snapshot.isPurgeable() ? Action.DELETE : Action.SKIP;
+            steps.add(new Step(steps.size() + 1, snapshot, action));
+            if (action == Action.DELETE) {
+                deletes++;
+                reserving |= snapshot.isSpaceReserving();
+            }
+        }
+        this.steps     = List.copyOf(steps);
+        this.deletes   = deletes;
+        this.reserving = reserving;
+    }
+
+    private final String               volumePath;
+    private final boolean              timeMachine;
+    private final int                  workers;
+    private final LatencyHistory.Stats history;
+    private final List<Step>           steps;
+    private final int                  deletes;
+    private final boolean              reserving;
+
+    /**
+     * What the purge would do with a snapshot.
+     */
+    public enum Action {
+        /** The snapshot would be deleted. */
+        DELETE,
+        /** The snapshot is not purgeable and would be left in place. */
+        SKIP
+    }
+
+    /**
+     * One snapshot in the plan.
+     *
+     * @param position the 1-based position of the snapshot in purge order
+     * @param snapshot the snapshot
+     * @param action   what the purge would do with it
+     */
+    public record Step(int position, Snapshot snapshot, Action action) {}
+
+    public String getVolumePath() {
+        return volumePath;
+    }
+
+    public boolean isTimeMachine() {
+        return timeMachine;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of snapshots the purge would delete.
+     *
+     * @return the number of {@link Action#DELETE} steps
+     */
+    public int deletes() {
+        return deletes;
+    }
+
+    /**
+     * Returns the number of snapshots the purge would skip because they are not purgeable.
+     *
+     * @return the number of {@link Action#SKIP} steps
+     */
+    public int skips() {
+        return steps.size() - deletes;
+    }
+
+    /**
+     * Returns the average delete latency the estimate is based on.
+     *
+     * @return the historical average, or the assumed latency if there is no history
+     */
+    public double deleteMillis() {
+        return history.known() ? history.meanMillis() : ASSUMED_DELETE_MILLIS;
+    }
+
+    /**
+     * Returns the number of delete commands the purge is expected to run, including expected retries.
+     *
+     * @return the expected number of delete commands
+     */
+    public long expectedDeleteCalls() {
+        return Math.round(deletes * (1 + history.retryRate()));
+    }
+
+    /**
+     * Returns the number of subprocess calls the purge is expected to make.
+     * <p>
+     * That is one snapshot listing, one Time Machine destination check, the expected delete commands, and
+     * the container free-space samples taken by the {@link PurgeReport}: one before and one after the run,
+     * one after a space-reserving snapshot is deleted, and one every two seconds while the purge runs.
+     *
+     * @return the expected number of subprocess calls
+     */
+    public long expectedCalls() {
+        long samples = 2 + (reserving ? 1 : 0) + estimatedDuration().toSeconds() / 2;
+        return 2 + expectedDeleteCalls() + samples;
+    }
+
+    /**
+     * Estimates how long the purge would take.
+     * <p>
+     * A space-reserving snapshot is deleted on its own before the rest, which are spread across the
+     * workers. Each delete is charged the average latency, increased by the expected retries and the
+     * average delay before a first retry.
+     *
+     * @return the estimated duration (zero if nothing would be deleted)
+     */
+    public Duration estimatedDuration() {
+        double retryMillis = RetryPolicy.DEFAULT.baseDelay().toMillis() * 0.75;
+        double perDelete   = deleteMillis() * (1 + history.retryRate()) + retryMillis * history.retryRate();
+        int    rest        = reserving ? deletes - 1 : deletes;
+        long   rounds      = (rest + workers - 1) / workers + (reserving ? 1 : 0);
+        return Duration.ofMillis(Math.round(rounds * perDelete));
+    }
+
+    /**
+     * Renders the plan as human-readable text.
+     *
+     * @return a multi-line description of the plan (never null)
+     */
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%nPurge plan for %s%s%n%n", volumePath, timeMachine ? " (TIME MACHINE volume)" : ""));
+        for (Step step : steps) {
+            Snapshot s = step.snapshot();
+            sb.append(String.format("%4d  %-6s  XID %-12s %s%s%n", step.position(), step.action(), s.getXID(), s.getName(),
+                                    s.isSpaceReserving() ? "  (space-reserving)" : step.action() == Action.SKIP ? "  (not purgeable)" : ""));
+        }
+        sb.append(String.format("%nDelete:     %d snapshots, skip %d%n", deletes, skips()));
+        sb.append(String.format("Calls:      ~%d subprocess calls (~%d deletes)%n", expectedCalls(), expectedDeleteCalls()));
+        sb.append(String.format("Estimate:   %s with %d worker%s (%.0f ms per delete, %s)%n", duration(estimatedDuration()), workers, workers == 1 ? "" : "s",
+                                deleteMillis(), history.known() ? "from " + history.samples() + " recorded deletes" : "assumed, no history yet"));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the plan as a JSON object.
+     *
+     * @return a single-line JSON object (never null)
+     */
+    public String toJson() {
+        StringBuilder stepsJson = new StringBuilder("[");
+        for (Step step : steps) {
+            if (stepsJson.length() > 1) {
+                stepsJson.append(',');
+            }
+            stepsJson.append("{\"action\":").append(Json.quote(step.action().name()))
+                     .append(",\"snapshot\":").append(step.snapshot().toJson(step.position())).append('}');
+        }
+        stepsJson.append(']');
+        return String.format(Locale.ROOT, "{\"volume\":%s,\"timeMachine\":%b,\"workers\":%d,\"deletes\":%d,\"skips\":%d,\"expectedCalls\":%d,\"expectedDeleteCalls\":%d,\"deleteMillis\":%.1f,\"historySamples\":%d,\"estimatedSeconds\":%.3f,\"steps\":%s}",
+                             Json.quote(volumePath), timeMachine, workers, deletes, skips(), expectedCalls(), expectedDeleteCalls(),
+                             deleteMillis(), history.samples(), estimatedDuration().toMillis() / 1000.0, stepsJson);
+    }
+
+    private static String duration(Duration duration) {
+        if (duration.toMinutes() > 0) {
+            return String.format("%dm %02ds", duration.toMinutes(), duration.toSecondsPart());
+        }
+        return String.format("%.1fs", duration.toMillis() / 1000.0);
+    }
+}
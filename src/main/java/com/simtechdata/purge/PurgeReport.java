@@ -0,0 +1,348 @@
+package com.simtechdata.purge;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+import com.simtechdata.util.Json;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The PurgeReport class accounts for the space reclaimed by a purge and how quickly it was reclaimed.
+ * <p>
+ * The free space of the volume's APFS Container is sampled when the purge starts, right after a
+ * space-reserving snapshot is deleted, every few seconds while the purge runs, and when it finishes.
+ * From those samples the report derives the bytes reclaimed, how much of that the space-reserving
+ * snapshot contributed, and the snapshot and byte throughput of the run. Counts are updated as each
+ * delete completes, so a report can be read while its purge is still running.
+ * <p>
+ * APFS releases the blocks of a deleted snapshot in the background, so the final figures may slightly
+ * undercount space that is still being freed when the purge ends.
+ */
+public class PurgeReport {
+
+    private static final long    SAMPLE_MILLIS = 2000;
+    private static final Pattern SIZE          = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([KMGTP]?B?)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Creates a report for a purge of the given volume.
+     *
+     * @param volumePath the absolute path to the APFS volume being purged; must not be null
+     */
+    public PurgeReport(String volumePath) {
+        this.volumePath = volumePath;
+    }
+
+    private final    String        volumePath;
+    private final    AtomicInteger purged         = new AtomicInteger();
+    private final    AtomicInteger failed         = new AtomicInteger();
+    private final    AtomicInteger retries        = new AtomicInteger();
+    private final    AtomicInteger attempts       = new AtomicInteger();
+    private final    AtomicLong    attemptNanos   = new AtomicLong();
+    private final    List<Sample>  samples        = new ArrayList<>();
+    private volatile int           selected       = 0;
+    private volatile long          startNanos     = 0;
+    private volatile long          endNanos       = 0;
+    private volatile long          freeBefore     = -1;
+    private volatile long          freeAfter      = -1;
+    private volatile long          reservingBytes = -1;
+    private volatile Thread        sampler;
+
+    /**
+     * A single reading of the container's free space.
+     *
+     * @param nanos  the {@link System#nanoTime()} at which the reading was taken
+     * @param purged the number of snapshots deleted at that time
+     * @param free   the free space in bytes, or -1 if it could not be determined
+     */
+    public record Sample(long nanos, int purged, long free) {}
+
+    /**
+     * Starts the report: takes the first free-space sample and begins periodic sampling.
+     *
+     * @param selectedCount the number of snapshots the purge will attempt to delete
+     */
+    void start(int selectedCount) {
+        selected   = selectedCount;
+        freeBefore = sample().free();
+        startNanos = System.nanoTime();
+        sampler    = Thread.ofVirtual().name("purge-sampler").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(SAMPLE_MILLIS);
+                }
+                catch (InterruptedException ignored) {
+                    return;
+                }
+                try {
+                    sample();
+                }
+                catch (RuntimeException ignored) {
+                    // A failed reading only leaves a gap in the samples; keep sampling.
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of a single delete.
+     *
+     * @param snapshot the snapshot that was deleted or failed to delete; must not be null
+     * @param success  {@code true} if the snapshot was deleted
+     */
+    void record(Snapshot snapshot, boolean success) {
+        if (!success) {
+            failed.incrementAndGet();
+            return;
+        }
+        purged.incrementAndGet();
+        if (snapshot.isSpaceReserving() && freeBefore >= 0) {
+            long free = sample().free();
+            if (free >= 0) {
+                reservingBytes = Math.max(0, free - freeBefore);
+            }
+        }
+    }
+
+    /**
+     * Records the wall-clock time of one delete attempt that ran the delete command.
+     *
+     * @param nanos the duration of the attempt in nanoseconds
+     */
+    void recordAttempt(long nanos) {
+        attempts.incrementAndGet();
+        attemptNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records that a delete failed transiently and will be retried.
+     */
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Finishes the report: stops periodic sampling and takes the final free-space sample.
+     *
+     * @return this report
+     */
+    PurgeReport finish() {
+        Thread thread = sampler;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        endNanos  = System.nanoTime();
+        freeAfter = sample().free();
+        return this;
+    }
+
+    private Sample sample() {
+        Sample sample = new Sample(System.nanoTime(), purged.get(), SnapCommands.containerFreeSpace(volumePath));
+        synchronized (samples) {
+            samples.add(sample);
+        }
+        return sample;
+    }
+
+    public String getVolumePath() {
+        return volumePath;
+    }
+
+    public int getSelected() {
+        return selected;
+    }
+
+    public int getPurged() {
+        return purged.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Returns the number of delete attempts that ran the delete command, including retries.
+     *
+     * @return the number of timed attempts
+     */
+    public int getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Returns the total wall-clock time of all timed delete attempts.
+     *
+     * @return the summed attempt time in nanoseconds
+     */
+    public long getAttemptNanos() {
+        return attemptNanos.get();
+    }
+
+    /**
+     * Indicates whether every attempted delete succeeded.
+     *
+     * @return {@code true} if no delete failed
+     */
+    public boolean success() {
+        return failed.get() == 0;
+    }
+
+    /**
+     * Returns a copy of the free-space samples taken so far, oldest first.
+     *
+     * @return the samples (never null)
+     */
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return List.copyOf(samples);
+        }
+    }
+
+    /**
+     * Returns the time the purge has been running, or ran for if it has finished.
+     *
+     * @return the elapsed time (zero if the purge has not started)
+     */
+    public Duration elapsed() {
+        if (startNanos == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((endNanos == 0 ? System.nanoTime() : endNanos) - startNanos);
+    }
+
+    /**
+     * Returns the bytes reclaimed so far, measured as growth in the container's free space.
+     *
+     * @return the reclaimed bytes, or -1 if free space could not be determined
+     */
+    public long reclaimedBytes() {
+        long after = freeAfter;
+        if (after < 0) {
+            List<Sample> current = getSamples();
+            after = current.isEmpty() ? -1 : current.getLast().free();
+        }
+        if (freeBefore < 0 || after < 0) {
+            return -1;
+        }
+        return Math.max(0, after - freeBefore);
+    }
+
+    /**
+     * Returns the bytes reclaimed by deleting the space-reserving snapshot.
+     *
+     * @return the reclaimed bytes, or -1 if the purge did not delete a space-reserving snapshot
+     */
+    public long reservingBytes() {
+        return reservingBytes;
+    }
+
+    /**
+     * Returns the average number of snapshots deleted per second.
+     *
+     * @return the snapshot throughput (zero if no time has elapsed)
+     */
+    public double snapshotsPerSecond() {
+        double seconds = elapsed().toNanos() / 1e9;
+        return seconds <= 0 ? 0 : purged.get() / seconds;
+    }
+
+    /**
+     * Returns the average number of bytes reclaimed per second.
+     *
+     * @return the byte throughput (zero if no time has elapsed or free space is unknown)
+     */
+    public double bytesPerSecond() {
+        double seconds   = elapsed().toNanos() / 1e9;
+        long   reclaimed = reclaimedBytes();
+        return seconds <= 0 || reclaimed < 0 ? 0 : reclaimed / seconds;
+    }
+
+    /**
+     * Renders a human-readable summary of the purge.
+     *
+     * @return a multi-line summary (never null)
+     */
+    public String render() {
+        long          reclaimed = reclaimedBytes();
+        StringBuilder sb        = new StringBuilder();
+        sb.append(String.format("Deleted:    %d of %d snapshots (%d failed) in %.1f seconds%n", purged.get(), selected, failed.get(), elapsed().toMillis() / 1000.0));
+        if (retries.get() > 0) {
+            sb.append(String.format("Retries:    %d after transient errors%n", retries.get()));
+        }
+        if (reclaimed < 0) {
+            sb.append("Reclaimed:  unknown (container free space is not available)\n");
+        }
+        else {
+            sb.append(String.format("Reclaimed:  %s (free space %s -> %s)%n", bytes(reclaimed), bytes(freeBefore), bytes(freeBefore + reclaimed)));
+            if (reservingBytes >= 0) {
+                sb.append(String.format("            %s of it from the space-reserving snapshot%n", bytes(reservingBytes)));
+            }
+        }
+        sb.append(String.format("Throughput: %.2f snapshots/s", snapshotsPerSecond()));
+        if (reclaimed >= 0) {
+            sb.append(String.format(", %s/s", bytes((long) bytesPerSecond())));
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Returns the report as a JSON object.
+     *
+     * @return a single-line JSON object (never null)
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"volume\":%s,\"selected\":%d,\"purged\":%d,\"failed\":%d,\"retries\":%d,\"elapsedSeconds\":%.3f,\"freeBefore\":%d,\"reclaimedBytes\":%d,\"reservingBytes\":%d,\"snapshotsPerSecond\":%.3f,\"bytesPerSecond\":%.0f}",
+                             Json.quote(volumePath), selected, purged.get(), failed.get(), retries.get(), elapsed().toNanos() / 1e9,
+                             freeBefore, reclaimedBytes(), reservingBytes, snapshotsPerSecond(), bytesPerSecond());
+    }
+
+    /**
+     * Formats a byte count using decimal units, the way Finder and {@code diskutil} do.
+     *
+     * @param bytes the number of bytes
+     * @return the formatted size, for example {@code 12.4 GB}
+     */
+    public static String bytes(long bytes) {
+        if (bytes < 1000) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB", "PB"};
+        double   value = bytes;
+        int      unit  = -1;
+        while (value >= 1000 && unit < units.length - 1) {
+            value /= 1000;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    /**
+     * Parses a size such as {@code 50GB}, {@code 1.5 TB} or {@code 750000000}, using the same decimal
+     * units as {@link #bytes(long)}. A size without a unit is a number of bytes.
+     *
+     * @param size the size to parse; must not be null
+     * @return the size in bytes
+     * @throws IllegalArgumentException if the size cannot be parsed or is negative
+     */
+    public static long parseBytes(String size) {
+        Matcher m = SIZE.matcher(size.trim());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        double value = Double.parseDouble(m.group(1));
+        String unit  = m.group(2).toUpperCase(Locale.ROOT);
+        int    power = unit.isEmpty() ? 0 : "BKMGTP".indexOf(unit.charAt(0));
+        return (long) (value * Math.pow(1000, power));
+    }
+}
@@ -0,0 +1,54 @@
+package com.simtechdata.purge;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A RetryPolicy decides how often, and after how long, a transiently failed delete is retried.
+ * <p>
+ * Delays grow exponentially from {@code baseDelay} and are capped at {@code maxDelay}. Each delay is
+ * jittered between half and all of its exponential value, so deletes that collided with the same busy
+ * period do not all retry at the same moment.
+ *
+ * @param maxAttempts the total number of attempts per snapshot, including the first; at least 1
+ * @param baseDelay   the delay before the first retry, before jitter; must not be null
+ * @param maxDelay    the largest delay before jitter; must not be null
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+
+    /**
+     * The policy used unless another is given: five attempts, starting at half a second and capped at 30 seconds.
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, Duration.ofMillis(500), Duration.ofSeconds(30));
+
+    /**
+     * A policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO);
+
+    /**
+     * Indicates whether another attempt may follow the given one.
+     *
+     * @param attempt the 1-based number of the attempt that just failed
+     * @return {@code true} if the delete should be retried
+     */
+    public boolean allowsRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Returns the jittered delay to wait before the attempt following the given one.
+     *
+     * @param attempt the 1-based number of the attempt that just failed
+     * @return the delay before retrying (never null)
+     */
+    public Duration delayAfter(int attempt) {
+        long base   = baseDelay.toMillis();
+        long cap    = maxDelay.toMillis();
+        int  shift  = Math.min(attempt - 1, 30);
+        long expo   = Math.min(cap, base << shift);
+        long half   = expo / 2;
+        long jitter = half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0;
+        return Duration.ofMillis(half + jitter + (expo % 2));
+    }
+}
@@ -0,0 +1,369 @@
+package com.simtechdata.server;
+
+import com.simtechdata.bash.SingleFlight;
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.purge.PurgeExecutor;
+import com.simtechdata.purge.PurgeReport;
+import com.simtechdata.structure.Selector;
+import com.simtechdata.structure.Snapshot;
+import com.simtechdata.util.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The Agent class runs SnapZap as a local HTTP service so snapshot hygiene can be driven remotely.
+ * <p>
+ * The agent is built on the JDK's built-in HTTP server and handles every request, and every purge job,
+ * on its own virtual thread. It exposes:
+ * <ul>
+ *     <li>{@code GET /snapshots?volume=Name[&fresh=true]} - the snapshot inventory of a volume as JSON</li>
+ *     <li>{@code POST /purge?volume=Name&selector=all[&timeMachine=true]} - submits an asynchronous purge job</li>
+ *     <li>{@code GET /jobs} and {@code GET /jobs/<id>} - the status of submitted purge jobs</li>
+ *     <li>{@code GET /metrics} - counters in the Prometheus text format</li>
+ *     <li>{@code GET /health} - a liveness check</li>
+ * </ul>
+ * Inventory requests go through the coalesced listings of {@link SnapCommands}, so concurrent polls of
+ * the same volume share a single listing. Purge jobs on the same volume run one at a time. Finished jobs
+ * are kept for {@link #JOB_TTL}, and only the newest {@value #MAX_FINISHED_JOBS} of them, so a long-running
+ * agent does not accumulate them.
+ * <p>
+ * Every endpoint except {@code /health} requires an {@code Authorization: Bearer <token>} header carrying
+ * the agent's shared secret. Besides keeping other hosts out, the custom header means a web page cannot
+ * send an accepted request from the user's browser, since browsers only attach it after a CORS preflight
+ * the agent never grants. When no token is configured a random one is generated and printed at startup.
+ * Time Machine volumes can only be purged if the agent was started with Time Machine purges allowed, and
+ * the request then still has to pass {@code timeMachine=true}.
+ */
+public class Agent {
+
+    private static final Duration JOB_TTL           = Duration.ofHours(1);
+    private static final int      MAX_FINISHED_JOBS = 1000;
+
+    /**
+     * Creates an agent that will listen on the given address and port once started.
+     *
+     * @param bindAddress      the address to bind, for example {@code 127.0.0.1} or {@code 0.0.0.0}; must not be null
+     * @param port             the TCP port to listen on
+     * @param token            the shared secret clients must present, or {@code null} to generate one at startup
+     * @param allowTimeMachine {@code true} to accept purge jobs on Time Machine volumes
+     */
+    public Agent(String bindAddress, int port, String token, boolean allowTimeMachine) {
+        this.bindAddress      = bindAddress;
+        this.port             = port;
+        this.generatedToken   = token == null || token.isBlank();
+        this.token            = generatedToken ? newToken() : token;
+        this.allowTimeMachine = allowTimeMachine;
+        this.metrics          = new Metrics();
+    }
+
+    private final String                     bindAddress;
+    private final int                        port;
+    private final String                     token;
+    private final boolean                    generatedToken;
+    private final boolean                    allowTimeMachine;
+    private final Metrics                    metrics;
+    private final Map<Long, PurgeJob>        jobs        = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> volumeLocks = new ConcurrentHashMap<>();
+    private final AtomicLong                 jobIds      = new AtomicLong();
+    private final ExecutorService            workers     = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch             stopped     = new CountDownLatch(1);
+
+    /**
+     * Starts the HTTP server and blocks until the process is asked to shut down.
+     *
+     * @return 0 when the agent stops normally; 1 if the server could not be started
+     */
+    public int run() {
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        }
+        catch (IOException e) {
+            System.out.println("Could not start agent on " + bindAddress + ":" + port + " - " + e.getMessage());
+            return 1;
+        }
+        server.setExecutor(workers);
+        server.createContext("/snapshots", authorized(this::handleSnapshots));
+        server.createContext("/purge", authorized(this::handlePurge));
+        server.createContext("/jobs", authorized(this::handleJobs));
+        server.createContext("/metrics", authorized(this::handleMetrics));
+        server.createContext("/health", exchange -> respond(exchange, 200, "application/json", "{\"status\":\"ok\"}"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            workers.shutdownNow();
+            stopped.countDown();
+        }));
+        server.start();
+        System.out.println("SnapZap agent listening on http://" + bindAddress + ":" + server.getAddress().getPort());
+        if (generatedToken) {
+            System.out.println("No token was given, clients must send: Authorization: Bearer " + token);
+        }
+        try {
+            stopped.await();
+        }
+        catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    /**
+     * Handles {@code GET /snapshots}, returning the inventory of the requested volume.
+     */
+    private void handleSnapshots(HttpExchange exchange) throws IOException {
+        metrics.requests.increment();
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "application/json", error("Use GET"));
+            return;
+        }
+        Map<String, String> query      = query(exchange);
+        String              volumePath = volume(exchange, query);
+        if (volumePath == null) {
+            return;
+        }
+        SingleFlight.Loaded<Map<Integer, Snapshot>> listing;
+        try {
+            listing = SnapCommands.getListing(volumePath, Boolean.parseBoolean(query.get("fresh")));
+        }
+        catch (IllegalStateException e) {
+            respond(exchange, 500, "application/json", error(e.getMessage()));
+            return;
+        }
+        StringJoiner                                entries = new StringJoiner(",", "[", "]");
+        for (Map.Entry<Integer, Snapshot> entry : new TreeMap<>(listing.value()).entrySet()) {
+            entries.add(entry.getValue().toJson(entry.getKey()));
+        }
+        String body = String.format(Locale.ROOT, "{\"volume\":%s,\"fetchedAt\":%s,\"count\":%d,\"snapshots\":%s}",
+                                    Json.quote(volumePath), Json.quote(listing.loadedAt().toString()),
+                                    listing.value().size(), entries);
+        respond(exchange, 200, "application/json", body);
+    }
+
+    /**
+     * Handles {@code POST /purge}, submitting a purge job for the requested volume and selector.
+     */
+    private void handlePurge(HttpExchange exchange) throws IOException {
+        metrics.requests.increment();
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "application/json", error("Use POST"));
+            return;
+        }
+        Map<String, String> query      = query(exchange);
+        String              volumePath = volume(exchange, query);
+        if (volumePath == null) {
+            return;
+        }
+        Selector selector;
+        try {
+            selector = Selector.parse(query.getOrDefault("selector", ""));
+        }
+        catch (IllegalArgumentException e) {
+            respond(exchange, 400, "application/json", error(e.getMessage()));
+            return;
+        }
+        if (SnapCommands.isTimeMachineVolume(volumePath)) {
+            if (!allowTimeMachine) {
+                respond(exchange, 403, "application/json", error(volumePath + " is a Time Machine volume and this agent does not allow purging Time Machine volumes"));
+                return;
+            }
+            if (!Boolean.parseBoolean(query.get("timeMachine"))) {
+                respond(exchange, 409, "application/json", error(volumePath + " is a Time Machine volume; pass timeMachine=true to purge it"));
+                return;
+            }
+        }
+        PurgeJob job = new PurgeJob(jobIds.incrementAndGet(), volumePath, selector);
+        pruneJobs();
+        jobs.put(job.getId(), job);
+        metrics.jobsSubmitted.increment();
+        workers.submit(() -> runJob(job));
+        exchange.getResponseHeaders().add("Location", "/jobs/" + job.getId());
+        respond(exchange, 202, "application/json", job.toJson());
+    }
+
+    /**
+     * Handles {@code GET /jobs} and {@code GET /jobs/<id>}.
+     */
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        metrics.requests.increment();
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "application/json", error("Use GET"));
+            return;
+        }
+        pruneJobs();
+        String path = exchange.getRequestURI().getPath().replaceFirst("^/jobs/?", "");
+        if (path.isEmpty()) {
+            StringJoiner all = new StringJoiner(",", "[", "]");
+            jobs.values().stream().sorted((a, b) -> Long.compare(a.getId(), b.getId())).forEach(job -> all.add(job.toJson()));
+            respond(exchange, 200, "application/json", all.toString());
+            return;
+        }
+        PurgeJob job = path.matches("\\d{1,18}") ? jobs.get(Long.parseLong(path)) : null;
+        if (job == null) {
+            respond(exchange, 404, "application/json", error("No such job: " + path));
+            return;
+        }
+        respond(exchange, 200, "application/json", job.toJson());
+    }
+
+    /**
+     * Handles {@code GET /metrics}.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        metrics.requests.increment();
+        respond(exchange, 200, "text/plain; version=0.0.4", metrics.render());
+    }
+
+    /**
+     * Runs a purge job to completion, holding the volume so that jobs on the same volume do not overlap.
+     *
+     * @param job the job to run; must not be null
+     */
+    private void runJob(PurgeJob job) {
+        ReentrantLock lock = volumeLocks.computeIfAbsent(job.getVolumePath(), v -> new ReentrantLock());
+        lock.lock();
+        metrics.jobsRunning.increment();
+        String errorMessage = null;
+        try {
+            List<Snapshot> selected  = SnapCommands.purgeOrder(SnapCommands.getListing(job.getVolumePath(), true).value())
+                                                   .stream()
+                                                   .filter(job.getSelector()::matches)
+                                                   .toList();
+            List<Snapshot> purgeable = selected.stream().filter(Snapshot::isPurgeable).toList();
+            job.start(selected.size() - purgeable.size());
+            PurgeReport report = new PurgeExecutor().run(purgeable, job.getReport());
+            metrics.snapshotsPurged.add(report.getPurged());
+            metrics.snapshotsFailed.add(report.getFailed());
+            metrics.deleteRetries.add(report.getRetries());
+            metrics.bytesReclaimed.add(Math.max(0, report.reclaimedBytes()));
+        }
+        catch (RuntimeException e) {
+            errorMessage = String.valueOf(e.getMessage());
+        }
+        finally {
+            job.finish(errorMessage);
+            metrics.jobsRunning.decrement();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets finished jobs older than {@link #JOB_TTL}, then the oldest finished jobs beyond
+     * {@value #MAX_FINISHED_JOBS}. Queued and running jobs are always kept.
+     */
+    private void pruneJobs() {
+        Instant cutoff = Instant.now().minus(JOB_TTL);
+        jobs.values().removeIf(job -> job.getFinished() != null && job.getFinished().isBefore(cutoff));
+        List<PurgeJob> finished = jobs.values().stream()
+                                      .filter(job -> job.getFinished() != null)
+                                      .sorted(Comparator.comparingLong(PurgeJob::getId))
+                                      .toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+
+    /**
+     * Wraps a handler so that it only runs for requests carrying the agent's bearer token.
+     *
+     * @param handler the handler to protect; must not be null
+     * @return a handler that answers {@code 401} to requests without the token (never null)
+     */
+    private HttpHandler authorized(HttpHandler handler) {
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        return exchange -> {
+            String header = exchange.getRequestHeaders().getFirst("Authorization");
+            if (header == null || !MessageDigest.isEqual(expected, header.trim().getBytes(StandardCharsets.UTF_8))) {
+                metrics.requests.increment();
+                metrics.unauthorized.increment();
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                respond(exchange, 401, "application/json", error("Missing or invalid bearer token"));
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Resolves and validates the {@code volume} query parameter, responding with an error if it is unusable.
+     *
+     * @return the absolute volume path, or {@code null} if an error response has already been sent
+     */
+    private String volume(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String volume = query.get("volume");
+        if (volume == null || volume.isBlank()) {
+            respond(exchange, 400, "application/json", error("Missing required parameter: volume"));
+            return null;
+        }
+        String volumePath = SnapCommands.normalizeVolume(volume);
+        if (!SnapCommands.volumeExists(volumePath)) {
+            respond(exchange, 404, "application/json", error("Volume does not exist: " + volumePath));
+            return null;
+        }
+        return volumePath;
+    }
+
+    /**
+     * Parses the query string of the request into a map of decoded parameter names to values.
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String              raw    = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int    eq    = pair.indexOf('=');
+            String name  = URLDecoder.decode(eq == -1 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq == -1 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    /**
+     * Sends a complete response and closes the exchange.
+     */
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.simtechdata.server;
+
+import com.simtechdata.bash.SingleFlight;
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.structure.Snapshot;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Metrics class holds the counters exposed by the agent on {@code /metrics}.
+ * <p>
+ * Counters are {@link LongAdder}s so that request threads can update them without contending on a
+ * shared lock. The rendered output uses the Prometheus text exposition format so it can be scraped
+ * directly by common monitoring systems.
+ */
+public class Metrics {
+
+    final LongAdder requests        = new LongAdder();
+    final LongAdder unauthorized    = new LongAdder();
+    final LongAdder jobsSubmitted   = new LongAdder();
+    final LongAdder jobsRunning     = new LongAdder();
+    final LongAdder snapshotsPurged = new LongAdder();
+    final LongAdder snapshotsFailed = new LongAdder();
+    final LongAdder bytesReclaimed  = new LongAdder();
+    final LongAdder deleteRetries   = new LongAdder();
+
+    /**
+     * Renders every counter in the Prometheus text exposition format.
+     *
+     * @return the metrics document (never null)
+     */
+    public String render() {
+        StringBuilder                                sb       = new StringBuilder();
+        SingleFlight<String, Map<Integer, Snapshot>> listings = SnapCommands.listingStats();
+        counter(sb, "snapzap_http_requests_total", "HTTP requests received", requests.sum());
+        counter(sb, "snapzap_http_unauthorized_total", "HTTP requests rejected for a missing or invalid token", unauthorized.sum());
+        counter(sb, "snapzap_listings_total", "Snapshot listings executed against the backend", listings.loads());
+        counter(sb, "snapzap_listing_seconds_total", "Time spent executing snapshot listings", listings.loadNanos() / 1e9);
+        counter(sb, "snapzap_listings_coalesced_total", "Listing requests served by a shared or cached listing", listings.shared());
+        counter(sb, "snapzap_jobs_submitted_total", "Purge jobs submitted", jobsSubmitted.sum());
+        gauge(sb, "snapzap_jobs_running", "Purge jobs currently running", jobsRunning.sum());
+        counter(sb, "snapzap_snapshots_purged_total", "Snapshots deleted by purge jobs", snapshotsPurged.sum());
+        counter(sb, "snapzap_snapshots_failed_total", "Snapshots that purge jobs failed to delete", snapshotsFailed.sum());
+        counter(sb, "snapzap_delete_retries_total", "Snapshot deletes retried after a transient error", deleteRetries.sum());
+        counter(sb, "snapzap_reclaimed_bytes_total", "Container free space reclaimed by purge jobs", bytesReclaimed.sum());
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, Number value) {
+        metric(sb, name, help, "counter", value);
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, Number value) {
+        metric(sb, name, help, "gauge", value);
+    }
+
+    private static void metric(StringBuilder sb, String name, String help, String type, Number value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,120 @@
+package com.simtechdata.server;
+
+import com.simtechdata.purge.PurgeReport;
+import com.simtechdata.structure.Selector;
+import com.simtechdata.util.Json;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * The PurgeJob class tracks the progress of an asynchronous purge submitted to the agent.
+ * <p>
+ * A job is created in the {@link State#QUEUED} state, moves to {@link State#RUNNING} once it holds the
+ * volume, and ends in {@link State#DONE} (every selected snapshot deleted) or {@link State#FAILED}
+ * (at least one delete failed or the job could not run). Selected snapshots that are not purgeable are
+ * never attempted; they are counted as skipped and do not fail the job. Progress and reclaimed space are
+ * tracked in the job's {@link PurgeReport}. All fields are safe to read from request threads while the job
+ * is running.
+ */
+public class PurgeJob {
+
+    /**
+     * The lifecycle states of a purge job.
+     */
+    public enum State {QUEUED, RUNNING, DONE, FAILED}
+
+    /**
+     * Creates a queued purge job.
+     *
+     * @param id         the job identifier; must be unique within the agent
+     * @param volumePath the absolute path to the APFS volume to purge; must not be null
+     * @param selector   the selector choosing which snapshots to delete; must not be null
+     */
+    public PurgeJob(long id, String volumePath, Selector selector) {
+        this.id         = id;
+        this.volumePath = volumePath;
+        this.selector   = selector;
+        this.created    = Instant.now();
+        this.report     = new PurgeReport(volumePath);
+    }
+
+    private final    long        id;
+    private final    String      volumePath;
+    private final    Selector    selector;
+    private final    Instant     created;
+    private final    PurgeReport report;
+    private volatile State       state = State.QUEUED;
+    private volatile Instant     started;
+    private volatile Instant     finished;
+    private volatile String      error;
+    private volatile int         skipped;
+
+    public long getId() {
+        return id;
+    }
+
+    public String getVolumePath() {
+        return volumePath;
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public PurgeReport getReport() {
+        return report;
+    }
+
+    /**
+     * Returns when the job finished.
+     *
+     * @return the finish time, or {@code null} if the job is still queued or running
+     */
+    public Instant getFinished() {
+        return finished;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Marks the job as running.
+     *
+     * @param skippedCount the number of selected snapshots left in place because they are not purgeable
+     */
+    void start(int skippedCount) {
+        skipped = skippedCount;
+        started = Instant.now();
+        state   = State.RUNNING;
+    }
+
+    /**
+     * Marks the job as finished, deriving the final state from the recorded outcomes.
+     *
+     * @param errorMessage a description of why the job could not complete, or {@code null} if it ran to completion
+     */
+    void finish(String errorMessage) {
+        error    = errorMessage;
+        finished = Instant.now();
+        state    = errorMessage == null && report.success() ? State.DONE : State.FAILED;
+    }
+
+    /**
+     * Returns a JSON object describing the current status of this job.
+     *
+     * @return a single-line JSON object (never null)
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"id\":%d,\"volume\":%s,\"selector\":%s,\"state\":%s,\"skipped\":%d,\"report\":%s,\"created\":%s,\"started\":%s,\"finished\":%s,\"error\":%s}",
+                             id, Json.quote(volumePath), Json.quote(selector.toString()), Json.quote(state.name()),
+                             skipped, report.toJson(), Json.quote(created.toString()),
+                             Json.quote(started == null ? null : started.toString()),
+                             Json.quote(finished == null ? null : finished.toString()), Json.quote(error));
+    }
+}
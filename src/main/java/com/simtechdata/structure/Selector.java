@@ -0,0 +1,91 @@
+package com.simtechdata.structure;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * A Selector chooses which snapshots on a volume an operation applies to.
+ * <p>
+ * Selectors are written as {@code kind} or {@code kind:value}:
+ * <ul>
+ *     <li>{@code all} - every snapshot</li>
+ *     <li>{@code reserving} - the snapshot that limits the minimum size of the APFS Container</li>
+ *     <li>{@code xid:<number>} - the snapshot with the given transaction identifier</li>
+ *     <li>{@code uuid:<uuid>} - the snapshot with the given UUID (case-insensitive)</li>
+ *     <li>{@code name:<text>} - every snapshot whose name contains the given text</li>
+ * </ul>
+ *
+ * @param kind  the selector kind, in lower case
+ * @param value the selector argument; empty for kinds that take none
+ */
+public record Selector(String kind, String value) {
+
+    /**
+     * Parses a selector expression.
+     *
+     * @param expression the selector text, for example {@code xid:123456}; must not be null
+     * @return the parsed selector (never null)
+     * @throws IllegalArgumentException if the expression is not a recognized selector
+     */
+    public static Selector parse(String expression) {
+        String text  = expression.trim();
+        int    colon = text.indexOf(':');
+        String kind  = (colon == -1 ? text : text.substring(0, colon)).toLowerCase(Locale.ROOT);
+        String value = colon == -1 ? "" : text.substring(colon + 1).trim();
+        switch (kind) {
+            case "all", "reserving" -> {
+                if (!value.isEmpty()) {
+                    throw new IllegalArgumentException("Selector '" + kind + "' does not take a value");
+                }
+            }
+            case "xid" -> {
+                try {
+                    if (!value.matches("\\d+")) {
+                        throw new NumberFormatException(value);
+                    }
+                    Long.parseLong(value);
+                }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Selector 'xid' needs a numeric value");
+                }
+            }
+            case "uuid" -> {
+                try {
+                    UUID.fromString(value);
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Selector 'uuid' needs a UUID");
+                }
+            }
+            case "name" -> {
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Selector 'name' needs a value");
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown selector: " + expression);
+        }
+        return new Selector(kind, value);
+    }
+
+    /**
+     * Indicates whether the given snapshot is chosen by this selector.
+     *
+     * @param snapshot the snapshot to test; must not be null
+     * @return {@code true} if the snapshot matches; {@code false} otherwise
+     */
+    public boolean matches(Snapshot snapshot) {
+        return switch (kind) {
+            case "all" -> true;
+            case "reserving" -> snapshot.isSpaceReserving();
+            case "xid" -> snapshot.getXID() == Long.parseLong(value);
+            case "uuid" -> snapshot.getUUID().equals(UUID.fromString(value));
+            case "name" -> snapshot.getName().contains(value);
+            default -> false;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return value.isEmpty() ? kind : kind + ":" + value;
+    }
+}
@@ -1,38 +1,100 @@
 package com.simtechdata.structure;
 
-public class Snapshot {
+import com.simtechdata.util.Json;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable descriptor of an APFS snapshot.
+ * <p>
+ * Every derived value, such as the creation time in the name and the snapshot family, is computed once in
+ * the constructor. Instances never change afterwards, so they can be shared, sorted and indexed by any number
+ * of threads without locking.
+ */
+public final class Snapshot {
+
+    private static final Pattern           NAME_STAMP = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}-\\d{6})");
+    private static final DateTimeFormatter STAMP      = DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss");
+
+    /**
+     * The tool or subsystem that created a snapshot, as recognized from its name.
+     */
+    public enum Family {
+        /** A Carbon Copy Cloner snapshot ({@code com.bombich.ccc.*}). */
+        CCC,
+        /** An APFS safety net snapshot, kept by the system while it updates or restores the volume. */
+        SAFETYNET,
+        /** A Time Machine snapshot ({@code com.apple.TimeMachine.*}). */
+        TIME_MACHINE,
+        /** Any other snapshot, for example one taken by a macOS update. */
+        OTHER;
+
+        /**
+         * Recognizes the family of a snapshot from its name.
+         *
+         * @param name the snapshot name; must not be null
+         * @return the family (never null)
+         */
+        public static Family of(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("com.bombich.ccc")) {
+                return CCC;
+            }
+            if (lower.contains("safetynet")) {
+                return SAFETYNET;
+            }
+            if (lower.startsWith("com.apple.timemachine")) {
+                return TIME_MACHINE;
+            }
+            return OTHER;
+        }
+    }
 
     /**
      * Constructs an immutable descriptor of an APFS snapshot.
      * <p>
-     * The provided values are stored as-is and are expected to represent a single snapshot
-     * discovered on a specific APFS volume.
+     * The creation time is taken from a {@code yyyy-MM-dd-HHmmss} timestamp in the name, read in the
+     * system time zone as Time Machine and Carbon Copy Cloner write it.
      *
-     * @param disk       the disk or volume identifier where the snapshot resides (for example, a device node or mount path); should not be null or empty
-     * @param UUID       the globally unique identifier of the snapshot in canonical string form; should not be null or empty
-     * @param name       the human-readable name assigned to the snapshot; should not be null (may be empty)
-     * @param XID        the snapshot transaction identifier as a string; should not be null or empty
-     * @param purgeable  whether the snapshot is marked as purgeable at the time of creation
+     * @param disk           the disk identifier where the snapshot resides (for example, {@code disk3s1}); must not be null
+     * @param uuid           the globally unique identifier of the snapshot; must not be null
+     * @param name           the human-readable name assigned to the snapshot; must not be null (may be empty)
+     * @param xid            the snapshot transaction identifier
+     * @param purgeable      whether the snapshot is marked as purgeable
+     * @param spaceReserving whether the snapshot limits the minimum size of the APFS Container
      */
-    public Snapshot(String disk, String UUID, String name, String XID, boolean purgeable) {
-        this.disk      = disk;
-        this.UUID      = UUID;
-        Name           = name;
-        this.XID       = XID;
-        this.purgeable = purgeable;
+    public Snapshot(String disk, UUID uuid, String name, long xid, boolean purgeable, boolean spaceReserving) {
+        this.disk           = disk;
+        this.uuid           = uuid;
+        this.name           = name;
+        this.xid            = xid;
+        this.purgeable      = purgeable;
+        this.spaceReserving = spaceReserving;
+        this.created        = created(name);
+        this.family         = Family.of(name);
     }
 
     private final String  disk;
-    private final String  UUID;
-    private final String  Name;
-    private final String  XID;
+    private final UUID    uuid;
+    private final String  name;
+    private final long    xid;
     private final boolean purgeable;
-    private boolean spaceReserving = false;
+    private final boolean spaceReserving;
+    private final Instant created;
+    private final Family  family;
 
     /**
      * Returns the disk or volume identifier that hosts this snapshot.
      *
-     * @return the disk identifier or mount path on which the snapshot exists (never null)
+     * @return the disk identifier on which the snapshot exists (never null)
      */
     public String getDisk() {
         return disk;
@@ -41,10 +103,10 @@ public class Snapshot {
     /**
      * Returns the globally unique identifier of this snapshot.
      *
-     * @return the snapshot UUID in string form (never null)
+     * @return the snapshot UUID (never null)
      */
-    public String getUUID() {
-        return UUID;
+    public UUID getUUID() {
+        return uuid;
     }
 
     /**
@@ -53,19 +115,19 @@ public class Snapshot {
      * @return the snapshot name as provided by the source system (never null, may be empty)
      */
     public String getName() {
-        return Name;
+        return name;
     }
 
     /**
      * Returns the transaction identifier (XID) associated with this snapshot.
      * <p>
-     * The XID is typically a numeric string that uniquely identifies the filesystem transaction
-     * from which the snapshot was created.
+     * XIDs identify the filesystem transaction from which the snapshot was created and increase over time
+     * within an APFS Container, so they order the snapshots of a volume from oldest to newest.
      *
-     * @return the snapshot XID as a string (never null)
+     * @return the snapshot XID
      */
-    public String getXID() {
-        return XID;
+    public long getXID() {
+        return xid;
     }
 
     /**
@@ -81,21 +143,72 @@ public class Snapshot {
     public boolean isPurgeable() {
         return purgeable;
     }
-    
-    public void setSpaceReserving(boolean reserving) {
-        spaceReserving = reserving;
-    }
 
+    /**
+     * Indicates whether this snapshot limits the minimum size of the APFS Container.
+     *
+     * @return {@code true} if deleting this snapshot releases space the container is reserving for it
+     */
     public boolean isSpaceReserving() {
         return spaceReserving;
     }
 
+    /**
+     * Returns the time this snapshot was created, as recorded in its name.
+     *
+     * @return the creation time, or {@code null} if the name carries no timestamp
+     */
+    public Instant getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the tool or subsystem that created this snapshot.
+     *
+     * @return the snapshot family (never null)
+     */
+    public Family getFamily() {
+        return family;
+    }
+
     @Override
     public String toString() {
-        String out = String.format("Disk: %s\nUUID: %s\nName: %s\nXID: %s\nPurgeable: %s", disk, UUID, Name, XID, (purgeable ? "YES" : "NO"));
+        String out = String.format("Disk: %s\nUUID: %s\nName: %s\nXID: %d\nPurgeable: %s", disk, uuidText(), name, xid, (purgeable ? "YES" : "NO"));
         if (spaceReserving) {
             out += "\n\t***** This snapshot limits the minimum size of the APFS Container *****";
         }
         return out;
     }
+
+    /**
+     * Returns a JSON object describing this snapshot.
+     *
+     * @param index the 1-based index of the snapshot in its volume listing
+     * @return a single-line JSON object (never null)
+     */
+    public String toJson(int index) {
+        return String.format(Locale.ROOT, "{\"index\":%d,\"disk\":%s,\"uuid\":%s,\"name\":%s,\"xid\":%d,\"family\":%s,\"created\":%s,\"purgeable\":%b,\"spaceReserving\":%b}",
+                             index, Json.quote(disk), Json.quote(uuidText()), Json.quote(name), xid, Json.quote(family.name()),
+                             created == null ? "null" : Json.quote(created.toString()), purgeable, spaceReserving);
+    }
+
+    /**
+     * Returns the UUID in upper case, the way {@code diskutil} prints it.
+     */
+    private String uuidText() {
+        return uuid.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static Instant created(String name) {
+        Matcher m = NAME_STAMP.matcher(name);
+        if (m.find()) {
+            try {
+                return LocalDateTime.parse(m.group(1), STAMP).atZone(ZoneId.systemDefault()).toInstant();
+            }
+            catch (DateTimeException ignored) {
+                // Not a real timestamp; the snapshot is treated as having none.
+            }
+        }
+        return null;
+    }
 }
@@ -1,6 +1,7 @@
 package com.simtechdata.ui;
 
 import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.purge.PurgeReport;
 import com.simtechdata.structure.Snapshot;
 
 import java.util.Map;
@@ -76,7 +77,7 @@ public class Flow {
                 }
 
                 case "3" -> {
-                    purgeAll();
+                    purgeAll(false);
                     snapMap = SnapCommands.getSnapshots(volumePath);
                     if (snapMap.isEmpty()) {
                         System.out.println("\nDone!\n");
@@ -124,16 +125,19 @@ public class Flow {
      * Purges all snapshots for the configured volume after user confirmation.
      * <p>
      * Behavior:
-     * - Prompts the user to confirm deletion of all snapshots.
-     * - If confirmed, delegates to the snapshot command layer to perform the purge.
+     * - Prompts the user to confirm deletion of all snapshots, unless {@code assumeYes} is set.
+     * - Refuses to purge a Time Machine volume without interactive confirmation.
+     * - If confirmed, delegates to the snapshot command layer to perform the purge, showing live progress.
+     * - Prints how much space was reclaimed and how fast.
      * <p>
      * Returns:
      * - 0 if the user cancels or if the purge operation reports success.
-     * - 1 if the purge operation reports failure.
+     * - 1 if the purge operation reports failure, or if {@code assumeYes} is set on a Time Machine volume.
      *
+     * @param assumeYes {@code true} to skip the confirmation prompt
      * @return operation status code (0 = success or canceled by user, 1 = failure)
      */
-    public int purgeAll() {
+    public int purgeAll(boolean assumeYes) {
         String  warning;
         boolean timemachine = false;
         if (SnapCommands.isTimeMachineVolume(volumePath)) {
@@ -155,25 +159,37 @@ public class Flow {
             warning = "\nWARNING: This will DELETE all %d snapshots on volume: %s\n\nAre you sure you want to proceed (Y/N)? ";
         }
         int count = snapMap.size();
-        System.out.printf(warning, count, volumePath);
-        String response = new Scanner(System.in).nextLine();
-        if (response.equalsIgnoreCase("N")) {
-            System.out.println("\nNo snapshots were deleted\n");
-            return 0;
+        if (assumeYes && timemachine) {
+            System.out.println("\n" + volumePath + " is a TIME MACHINE volume and must be purged interactively.\n\nNo snapshots were deleted\n");
+            return 1;
+        }
+        if (assumeYes) {
+            System.out.printf("%nPurging all %d snapshots on volume: %s%n%n", count, volumePath);
+        }
+        else {
+            System.out.printf(warning, count, volumePath);
+            String response = new Scanner(System.in).nextLine();
+            if (response.equalsIgnoreCase("N")) {
+                System.out.println("\nNo snapshots were deleted\n");
+                return 0;
+            }
         }
         if (timemachine) {
             System.out.print("\n Are you 100% sure? (Y/N) ");
-            response = new Scanner(System.in).nextLine();
+            String response = new Scanner(System.in).nextLine();
             if (response.equalsIgnoreCase("N")) {
                 System.out.println("\nNo snapshots were deleted\n");
                 return 0;
             }
         }
-        if (SnapCommands.purgeAll(volumePath)) {
+        PurgeReport report = SnapCommands.purgeAll(volumePath, new Progress());
+        if (report.success()) {
             System.out.println("\n\nAll snapshots were deleted!\n");
+            System.out.println(report.render());
             return 0;
         }
         else {
+            System.out.println("\n" + report.render());
             System.out.println("One or more snapshots failed to be deleted, re-check the volume and try again.");
         }
         return 1;
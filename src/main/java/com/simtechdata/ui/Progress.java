@@ -0,0 +1,190 @@
+package com.simtechdata.ui;
+
+import com.simtechdata.bash.SnapCommands;
+import com.simtechdata.purge.PurgeListener;
+import com.simtechdata.purge.PurgeReport;
+import com.simtechdata.structure.Snapshot;
+
+import java.io.Console;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Progress class renders the progress of a purge on the console.
+ * <p>
+ * Purge workers never write to the console themselves. Each delete is posted to a lock-free queue and a
+ * single render thread drains it, so workers never contend on {@code System.out}. On a terminal the
+ * render thread keeps one status line up to date with the completed, failed and remaining counts, the
+ * delete rate and an estimated time to completion. When the purge cannot know its total in advance, the
+ * remaining count and the estimate are left out. When output is redirected it prints the same summary
+ * every few seconds instead, so logs are not flooded.
+ * <p>
+ * Failed deletes are always printed in full. The full detail of successful deletes (the command that ran
+ * and its output) and of attempts that will be retried is only printed in verbose mode.
+ */
+public class Progress implements PurgeListener {
+
+    private static final long TTY_REFRESH_MILLIS = 200;
+    private static final long LOG_SUMMARY_MILLIS = 10_000;
+
+    private static volatile boolean verbose = false;
+
+    /**
+     * Enables or disables printing the full detail of every successful delete.
+     *
+     * @param enabled {@code true} to print every delete in full
+     */
+    public static void setVerbose(boolean enabled) {
+        verbose = enabled;
+    }
+
+    /**
+     * Creates a progress renderer writing to standard output.
+     */
+    public Progress() {
+        this.out = System.out;
+        Console console = System.console();
+        this.tty = console != null && console.isTerminal();
+    }
+
+    private record Event(Snapshot snapshot, SnapCommands.Deletion deletion, boolean retrying) {}
+
+    private final    PrintStream  out;
+    private final    boolean      tty;
+    private final    Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private volatile boolean      done   = false;
+    private volatile Thread       renderer;
+    private          int          total;
+    private          int          completed;
+    private          int          failed;
+    private          int          retries;
+    private          long         startNanos;
+    private          long         lastSummary;
+
+    @Override
+    public void started(int total) {
+        this.total       = total;
+        this.startNanos  = System.nanoTime();
+        this.lastSummary = startNanos;
+        renderer         = Thread.ofPlatform().daemon().name("purge-progress").start(this::render);
+    }
+
+    @Override
+    public void deleted(Snapshot snapshot, SnapCommands.Deletion deletion) {
+        events.add(new Event(snapshot, deletion, false));
+    }
+
+    @Override
+    public void retrying(Snapshot snapshot, SnapCommands.Deletion deletion, int attempt, Duration delay) {
+        events.add(new Event(snapshot, deletion, true));
+    }
+
+    @Override
+    public void finished(PurgeReport report) {
+        done = true;
+        Thread thread = renderer;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        }
+        catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The body of the render thread: drains events and redraws until the purge is finished and every
+     * event has been consumed. Only this thread touches the counters and writes to the console.
+     */
+    private void render() {
+        while (true) {
+            boolean finished = done;
+            drain();
+            long now = System.nanoTime();
+            if (tty) {
+                out.print("\r" + status(now) + "\033[K");
+                out.flush();
+            }
+            else if (finished || now - lastSummary >= TimeUnit.MILLISECONDS.toNanos(LOG_SUMMARY_MILLIS)) {
+                out.println(status(now));
+                lastSummary = now;
+            }
+            if (finished) {
+                if (tty) {
+                    out.println();
+                }
+                out.flush();
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(TTY_REFRESH_MILLIS));
+        }
+    }
+
+    /**
+     * Consumes every queued event, updating the counters and printing the detail of each delete that
+     * should be shown.
+     */
+    private void drain() {
+        Event event;
+        while ((event = events.poll()) != null) {
+            if (event.retrying()) {
+                retries++;
+                if (verbose) {
+                    if (tty) {
+                        out.print("\r\033[K");
+                    }
+                    out.println(event.deletion().detail());
+                    out.println("Will retry: " + event.snapshot().getName() + "\n");
+                }
+                continue;
+            }
+            if (event.deletion().success()) {
+                completed++;
+            }
+            else {
+                failed++;
+            }
+            if (verbose || !event.deletion().success()) {
+                if (tty) {
+                    out.print("\r\033[K");
+                }
+                out.println(event.deletion().detail());
+                out.println();
+            }
+        }
+    }
+
+    /**
+     * Builds the status line for the current counts.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the status line (never null)
+     */
+    private String status(long now) {
+        int    attempted = completed + failed;
+        int    remaining = Math.max(0, total - attempted);
+        double seconds   = (now - startNanos) / 1e9;
+        double rate      = seconds > 0 ? attempted / seconds : 0;
+        if (total == UNKNOWN_TOTAL) {
+            return String.format("Deleted %d, %d failed, %d retries | %.1f/s | elapsed %s",
+                                 completed, failed, retries, rate, duration((long) seconds));
+        }
+        String eta       = rate > 0 ? duration((long) (remaining / rate)) : "--:--";
+        return String.format("Deleted %d/%d, %d failed, %d remaining, %d retries | %.1f/s | elapsed %s | ETA %s",
+                             completed, total, failed, remaining, retries, rate, duration((long) seconds), eta);
+    }
+
+    private static String duration(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,43 @@
+package com.simtechdata.util;
+
+/**
+ * The Json class holds the few helpers SnapZap needs to emit JSON without pulling in a
+ * serialization library, which keeps the native image small.
+ */
+public class Json {
+
+    /**
+     * Returns the given text as a quoted JSON string literal.
+     * <p>
+     * Quotes, backslashes and control characters are escaped. A {@code null} value is rendered
+     * as the JSON literal {@code null}.
+     *
+     * @param text the text to quote; may be null
+     * @return the quoted JSON string (never null)
+     */
+    public static String quote(String text) {
+        if (text == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,190 @@
+package com.simtechdata.bash;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrency checks for {@link SingleFlight}.
+ */
+class SingleFlightTest {
+
+    private static final Duration FRESHNESS = Duration.ofMinutes(1);
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch                release = new CountDownLatch(1);
+        AtomicInteger                 calls   = new AtomicInteger();
+        SingleFlight<String, Integer> flight  = new SingleFlight<>(FRESHNESS, key -> {
+            await(release);
+            return calls.incrementAndGet();
+        });
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> flight.get("A")));
+            }
+            waitUntil(() -> flight.shared() == 15);
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(1, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, flight.loads());
+        assertEquals(1, flight.get("A"));
+    }
+
+    @Test
+    void callersAfterAnInvalidationDoNotJoinAnOlderLoad() throws Exception {
+        CountDownLatch                release = new CountDownLatch(1);
+        AtomicInteger                 calls   = new AtomicInteger();
+        SingleFlight<String, Integer> flight  = new SingleFlight<>(FRESHNESS, key -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                await(release);
+            }
+            return call;
+        });
+        CompletableFuture<Integer> stale = CompletableFuture.supplyAsync(() -> flight.get("A"));
+        waitUntil(() -> calls.get() == 1);
+        flight.invalidate("A");
+        assertEquals(2, flight.get("A"));
+        release.countDown();
+        assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+        assertEquals(2, flight.get("A"), "the load started before the invalidation must not be cached");
+        assertEquals(2, flight.loads());
+    }
+
+    @Test
+    void freshCallersDoNotJoinALoadStartedBeforeAnInvalidation() throws Exception {
+        CountDownLatch                release = new CountDownLatch(1);
+        AtomicInteger                 calls   = new AtomicInteger();
+        SingleFlight<String, Integer> flight  = new SingleFlight<>(FRESHNESS, key -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                await(release);
+            }
+            return call;
+        });
+        CompletableFuture<Integer> stale = CompletableFuture.supplyAsync(() -> flight.fetch("A", true).value());
+        waitUntil(() -> calls.get() == 1);
+        flight.invalidate("A");
+        assertEquals(2, flight.fetch("A", true).value());
+        release.countDown();
+        assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void invalidatingOneKeyKeepsTheOthersCached() {
+        AtomicInteger                 calls  = new AtomicInteger();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(FRESHNESS, key -> calls.incrementAndGet());
+        flight.get("A");
+        flight.get("B");
+        flight.invalidate("A");
+        flight.get("B");
+        assertEquals(2, flight.loads());
+        flight.get("A");
+        assertEquals(3, flight.loads());
+    }
+
+    @Test
+    void invalidationRacingAStoreNeverLeavesAStaleResultCached() throws Exception {
+        AtomicLong                 version = new AtomicLong();
+        AtomicLong                 stale   = new AtomicLong();
+        SingleFlight<String, Long> flight  = new SingleFlight<>(FRESHNESS, key -> version.get());
+        long                       end     = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        flight.fetch("A", true);
+                    }
+                }));
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long changed = version.incrementAndGet();
+                        flight.invalidate("A");
+                        if (flight.get("A") < changed) {
+                            stale.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.SECONDS);
+            }
+        }
+        assertEquals(0, stale.get(), "a listing taken before an invalidation was served after it");
+    }
+
+    @Test
+    void aFailedLoadIsSharedAndNotCached() throws Exception {
+        CountDownLatch                release = new CountDownLatch(1);
+        AtomicInteger                 calls   = new AtomicInteger();
+        SingleFlight<String, Integer> flight  = new SingleFlight<>(FRESHNESS, key -> {
+            if (calls.incrementAndGet() == 1) {
+                await(release);
+                throw new IllegalStateException("listing failed");
+            }
+            return 2;
+        });
+        CompletableFuture<Integer> first  = CompletableFuture.supplyAsync(() -> flight.get("A"));
+        waitUntil(() -> calls.get() == 1);
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> flight.get("A"));
+        waitUntil(() -> flight.shared() == 1);
+        release.countDown();
+        for (CompletableFuture<Integer> result : List.of(first, second)) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, flight.get("A"));
+    }
+
+    @Test
+    void freshFetchBypassesTheCache() {
+        AtomicInteger                 calls  = new AtomicInteger();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(FRESHNESS, key -> calls.incrementAndGet());
+        SingleFlight.Loaded<Integer>  cached = flight.fetch("A", false);
+        assertSame(cached, flight.fetch("A", false));
+        assertFalse(cached.value().equals(flight.fetch("A", true).value()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("timed out");
+            }
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out waiting for the condition");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+#
+# Checks the snapshot listing parser against captured `diskutil apfs listSnapshots` output,
+# without touching any volume.
+#
+# Usage: tools/parser-check.sh [listing...] [-- command...]
+#   listing  files holding captured listings (default: tools/listings/*.txt). Capture one with:
+#            diskutil apfs listSnapshots / > tools/listings/<name>.txt
+#   command  how to launch SnapZap (default: the first of target/Optimized/SnapZap,
+#            target/ARM/SnapZap, target/Intel/SnapZap, native-image/SnapZap that exists).
+#            For the JVM build: tools/parser-check.sh -- java -jar target/SnapZap-jar-with-dependencies.jar
+#
+# A listing must parse into as many snapshots as its "(N found)" header reports. Listings named
+# *.bad.txt hold entries the parser must reject, and pass only if SnapZap refuses them.
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+LISTINGS=()
+while [ "$#" -gt 0 ] && [ "$1" != "--" ]; do
+    LISTINGS+=("$1")
+    shift
+done
+[ "$#" -gt 0 ] && shift
+if [ "${#LISTINGS[@]}" -eq 0 ]; then
+    LISTINGS=(tools/listings/*.txt)
+fi
+
+if [ "$#" -gt 0 ]; then
+    CMD=("$@")
+else
+    CMD=()
+    for candidate in target/Optimized/SnapZap target/ARM/SnapZap target/Intel/SnapZap native-image/SnapZap; do
+        if [ -x "$candidate" ]; then
+            CMD=("$candidate")
+            break
+        fi
+    done
+    if [ "${#CMD[@]}" -eq 0 ]; then
+        echo "No native image found; build one or pass the command to run after --." >&2
+        exit 1
+    fi
+fi
+
+FAILED=0
+for listing in "${LISTINGS[@]}"; do
+    if output="$("${CMD[@]}" --check-listing "$listing" 2>&1)"; then
+        status=0
+    else
+        status=$?
+    fi
+    case "$listing" in
+        *.bad.txt)
+            if [ "$status" -ne 0 ]; then
+                echo "ok    $listing (rejected)"
+            else
+                echo "FAIL  $listing was accepted"
+                FAILED=1
+            fi
+            ;;
+        *)
+            expected="$(sed -n 's/^Snapshots\{0,1\} for [^ ]* (\([0-9]*\) found).*/\1/p' "$listing" | head -1)"
+            expected="${expected:-0}"
+            parsed="$(printf '%s\n' "$output" | sed -n 's/^\([0-9]*\) snapshots parsed from .*/\1/p')"
+            if [ "$status" -eq 0 ] && [ "$parsed" = "$expected" ]; then
+                echo "ok    $listing ($parsed snapshots)"
+            else
+                echo "FAIL  $listing: expected $expected snapshots, parsed ${parsed:-none}"
+                printf '%s\n' "$output" | tail -5 | sed 's/^/      /'
+                FAILED=1
+            fi
+            ;;
+    esac
+done
+exit "$FAILED"
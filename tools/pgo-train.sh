@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+#
+# Builds an instrumented native image of SnapZap, runs it against the simulated backend,
+# and writes the resulting profiles into pgo/ for the startupOptimized Maven profile.
+# Simulated deletes never fail unless --simulate-busy is given, so every training run follows the
+# same paths, and simulated runs are not recorded in ~/.snapzap/history.properties.
+#
+# Usage: tools/pgo-train.sh [march]
+#   march  the -march value for the image (default: compatibility; use armv8-a or x86-64 for releases)
+#
+# Then build the optimized image with:
+#   mvn -PstartupOptimized -Dnative-march=<march> native:compile
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+MARCH="${1:-compatibility}"
+BIN="target/pgo/SnapZap"
+
+mvn -B -PstartupInstrument -Dnative-march="$MARCH" native:compile
+
+mkdir -p pgo
+rm -f pgo/*.iprof
+
+echo "Training: --help"
+"$BIN" -XX:ProfilesDumpFile=pgo/help.iprof --help > /dev/null
+
+echo "Training: --list"
+"$BIN" -XX:ProfilesDumpFile=pgo/list.iprof --simulate 200 -v Training --list > /dev/null
+
+# About 1 in 20 simulated snapshots is not purgeable, like the system snapshots of a real volume. Their
+# deletes fail, so --purgeAll exits with 1 on purpose; that trains the failure path too. Any other exit
+# status means the run itself broke.
+echo "Training: --purgeAll --yes"
+status=0
+"$BIN" -XX:ProfilesDumpFile=pgo/purge.iprof --simulate 200 -v Training --purgeAll --yes --parallel 4 > /dev/null || status=$?
+if [ "$status" -gt 1 ]; then
+    echo "Training run failed with exit status $status" >&2
+    exit "$status"
+fi
+
+ls -l pgo/*.iprof
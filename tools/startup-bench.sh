@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+#
+# Measures time-to-first-output and peak memory (RSS) of SnapZap for --help, --list and
+# --purgeAll --yes, using the simulated backend so it runs anywhere and never touches real volumes.
+# Simulated deletes never fail and are not recorded in ~/.snapzap/history.properties, so runs are
+# repeatable and leave the delete latency history alone.
+#
+# Usage: tools/startup-bench.sh [runs] [command...]
+#   runs     the number of runs per scenario (default: 10)
+#   command  how to launch SnapZap (default: the first of target/Optimized/SnapZap,
+#            target/ARM/SnapZap, target/Intel/SnapZap, native-image/SnapZap that exists).
+#            For the JVM build: tools/startup-bench.sh 10 java -jar target/SnapZap-jar-with-dependencies.jar
+#
+# Prints the median and minimum time-to-first-output, the median peak RSS and the exit statuses of
+# each scenario. Peak RSS needs /usr/bin/time (-l on macOS, -v on Linux) and is shown as n/a without it.
+# --purgeAll --yes exits with 1 because about 1 in 20 simulated snapshots is not purgeable and fails
+# to delete, as on a real volume; any other status means the run broke and its timings are suspect.
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS="${1:-10}"
+shift || true
+
+if [ "$#" -gt 0 ]; then
+    CMD=("$@")
+else
+    CMD=()
+    for candidate in target/Optimized/SnapZap target/ARM/SnapZap target/Intel/SnapZap native-image/SnapZap; do
+        if [ -x "$candidate" ]; then
+            CMD=("$candidate")
+            break
+        fi
+    done
+    if [ "${#CMD[@]}" -eq 0 ]; then
+        echo "No native image found; build one or pass the command to run." >&2
+        exit 1
+    fi
+fi
+
+if [ -x /usr/bin/time ] && [ "$(uname)" = "Darwin" ]; then
+    TIME_FLAG="-l"
+elif [ -x /usr/bin/time ]; then
+    TIME_FLAG="-v"
+else
+    TIME_FLAG=""
+fi
+
+TMP="$(mktemp)"
+trap 'rm -f "$TMP"' EXIT
+
+# Runs one scenario once and prints "<ms to first output> <peak rss in bytes or -1> <exit status>".
+measure() {
+    perl -MTime::HiRes=time -e '
+        my ($tmp, $flag, @cmd) = @ARGV;
+        @cmd = ("/usr/bin/time", $flag, @cmd) if $flag ne "";
+        my $start = time;
+        my $pid   = open(my $out, "-|") // die "fork: $!";
+        if ($pid == 0) {
+            open(STDERR, ">", $tmp) or die "stderr: $!";
+            exec(@cmd) or die "exec: $!";
+        }
+        my $first;
+        read($out, my $byte, 1);
+        $first = time;
+        1 while read($out, my $rest, 65536);
+        close($out);
+        my $status = $? >> 8;
+        open(my $err, "<", $tmp) or die "read: $!";
+        my $rss = -1;
+        while (<$err>) {
+            $rss = $1        if /(\d+)\s+maximum resident set size/;
+            $rss = $1 * 1024 if /Maximum resident set size \(kbytes\):\s*(\d+)/;
+        }
+        printf "%.1f %d %d\n", ($first - $start) * 1000, $rss, $status;
+    ' "$TMP" "$TIME_FLAG" "$@"
+}
+
+# Prints the median of the numbers read from stdin.
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) { print "n/a" } else if (NR % 2) { print v[(NR + 1) / 2] } else { print (v[NR / 2] + v[NR / 2 + 1]) / 2 } }'
+}
+
+bench() {
+    local name="$1"
+    shift
+    local results=()
+    for ((i = 0; i < RUNS; i++)); do
+        results+=("$(measure "${CMD[@]}" "$@")")
+    done
+    local ttfo_median ttfo_min rss_median statuses
+    ttfo_median="$(printf '%s\n' "${results[@]}" | awk '{ print $1 }' | median)"
+    ttfo_min="$(printf '%s\n' "${results[@]}" | awk '{ print $1 }' | sort -n | head -1)"
+    rss_median="$(printf '%s\n' "${results[@]}" | awk '$2 >= 0 { print $2 / 1048576 }' | median)"
+    statuses="$(printf '%s\n' "${results[@]}" | awk '{ print $3 }' | sort -n | uniq | paste -sd, -)"
+    printf "%-22s %12s %12s %14s %8s\n" "$name" "$ttfo_median" "$ttfo_min" "$rss_median" "$statuses"
+}
+
+echo "Command: ${CMD[*]}    Runs: $RUNS"
+echo
+printf "%-22s %12s %12s %14s %8s\n" "Scenario" "TTFO ms" "min ms" "peak RSS MB" "exit"
+bench "--help" --help
+bench "--list" --simulate 200 -v Bench --list
+bench "--purgeAll --yes" --simulate 50 -v Bench --purgeAll --yes --parallel 4